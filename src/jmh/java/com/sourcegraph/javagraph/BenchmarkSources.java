@@ -0,0 +1,180 @@
+package com.sourcegraph.javagraph;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import org.apache.commons.io.FileUtils;
+
+import javax.lang.model.element.Element;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Source code fixtures shared by benchmarks. Default fixture is srclib-java's own code (always available, resolves
+ * against benchmark's classpath), it may be overridden with -Dsrclib.benchmark.sources=DIR
+ */
+class BenchmarkSources {
+
+    private static final String SOURCES_PROPERTY = "srclib.benchmark.sources";
+
+    private static final String DEFAULT_SOURCES = "src/main/java/com/sourcegraph/javagraph";
+
+    /**
+     * Location of test cases (see .gitmodules)
+     */
+    static final String TEST_CASES = "testdata/case";
+
+    /**
+     * @param dir directory to search in
+     * @return sorted list of java files located in a given directory
+     */
+    static List<String> javaFiles(File dir) {
+        List<String> ret = new ArrayList<>();
+        if (dir.isDirectory()) {
+            for (File file : FileUtils.listFiles(dir, new String[]{"java"}, true)) {
+                ret.add(file.getAbsolutePath());
+            }
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Parses and attributes default fixture the same way grapher does
+     *
+     * @return attributed compilation units
+     * @throws IOException
+     */
+    static Attributed attribute() throws IOException {
+        File dir = new File(System.getProperty(SOURCES_PROPERTY, DEFAULT_SOURCES));
+        List<String> files = javaFiles(dir);
+        if (files.isEmpty()) {
+            throw new IllegalStateException("No java files found in " + dir.getAbsolutePath());
+        }
+        return new Attributed(files);
+    }
+
+    /**
+     * @return project with default compiler settings
+     */
+    static Project project() {
+        return new GenericProject(new SourceUnit());
+    }
+
+    /**
+     * Parsed and attributed compilation units
+     */
+    static class Attributed {
+
+        final Trees trees;
+
+        final List<CompilationUnitTree> units = new ArrayList<>();
+
+        /**
+         * Named nodes (classes, methods, variables) and identifiers with their elements, in source order
+         */
+        final List<Node> nodes = new ArrayList<>();
+
+        /**
+         * Keeps task (and its context) reachable while trees are in use
+         */
+        private final JavacTask task;
+
+        private Attributed(List<String> files) throws IOException {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+            Iterable<? extends JavaFileObject> fileObjects = fileManager.getJavaFileObjectsFromStrings(files);
+            List<String> javacOpts = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                    "-XDcompilePolicy=attr",
+                    "-XDshouldStopPolicyIfError=ATTR",
+                    "-XDshouldStopPolicyIfNoError=ATTR",
+                    "-implicit:none",
+                    "-Xlint:none",
+                    "-proc:none");
+            task = (JavacTask) compiler.getTask(null, fileManager, diagnostic -> {
+            }, javacOpts, null, fileObjects);
+            trees = Trees.instance(task);
+            for (CompilationUnitTree unit : task.parse()) {
+                units.add(unit);
+            }
+            task.analyze();
+            for (CompilationUnitTree unit : units) {
+                TreeScanner scanner = new TreeScanner(new GraphData(), trees);
+                scanner.compilationUnit = unit;
+                Spans spans = new Spans(scanner);
+                new NodeCollector(unit, spans).scan(new TreePath(unit), null);
+            }
+        }
+
+        /**
+         * Collects named nodes of a compilation unit
+         */
+        private class NodeCollector extends TreePathScanner<Void, Void> {
+
+            private final CompilationUnitTree unit;
+            private final Spans spans;
+
+            NodeCollector(CompilationUnitTree unit, Spans spans) {
+                this.unit = unit;
+                this.spans = spans;
+            }
+
+            @Override
+            public Void visitClass(ClassTree node, Void p) {
+                add(node, node.getSimpleName().toString());
+                return super.visitClass(node, p);
+            }
+
+            @Override
+            public Void visitMethod(MethodTree node, Void p) {
+                add(node, node.getName().toString());
+                return super.visitMethod(node, p);
+            }
+
+            @Override
+            public Void visitVariable(VariableTree node, Void p) {
+                add(node, node.getName().toString());
+                return super.visitVariable(node, p);
+            }
+
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void p) {
+                add(node, node.getName().toString());
+                return super.visitIdentifier(node, p);
+            }
+
+            private void add(Tree tree, String name) {
+                Element element = trees.getElement(getCurrentPath());
+                if (element != null && !name.isEmpty()) {
+                    nodes.add(new Node(unit, spans, tree, name, element));
+                }
+            }
+        }
+    }
+
+    /**
+     * Named node of expression tree
+     */
+    static class Node {
+        final CompilationUnitTree unit;
+        final Spans spans;
+        final Tree tree;
+        final String name;
+        final Element element;
+
+        Node(CompilationUnitTree unit, Spans spans, Tree tree, String name, Element element) {
+            this.unit = unit;
+            this.spans = spans;
+            this.tree = tree;
+            this.name = name;
+            this.element = element;
+        }
+    }
+}
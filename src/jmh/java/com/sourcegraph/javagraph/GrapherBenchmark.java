@@ -0,0 +1,53 @@
+package com.sourcegraph.javagraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Macro benchmark: graphs all java files of a test case (parsing, attribution and tree scanning).
+ * Test cases are git submodules, run "git submodule update --init" first
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GrapherBenchmark {
+
+    @Param({"java-android-gradle-sample",
+            "java-ant-sample",
+            "java-error-tolerance",
+            "java-gradle-custom-project-name",
+            "java-gradle-sample",
+            "java-ident-issue-23",
+            "java-jdk-sample",
+            "java-maven-multi-module-sample",
+            "java-maven-sample",
+            "java-with-srcfile"})
+    public String testCase;
+
+    private List<String> files;
+
+    @Setup
+    public void setUp() {
+        File dir = new File(BenchmarkSources.TEST_CASES, testCase);
+        files = BenchmarkSources.javaFiles(dir);
+        if (files.isEmpty()) {
+            throw new IllegalStateException("No java files found in " + dir.getAbsolutePath() +
+                    ", please run \"git submodule update --init\"");
+        }
+    }
+
+    @Benchmark
+    public GraphData graphJavaFiles() throws Exception {
+        GraphData graph = new GraphData();
+        Grapher grapher = new Grapher(BenchmarkSources.project(), graph);
+        grapher.graphFiles(files);
+        grapher.close();
+        return graph;
+    }
+}
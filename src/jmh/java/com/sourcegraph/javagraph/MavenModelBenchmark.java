@@ -0,0 +1,38 @@
+package com.sourcegraph.javagraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building of full and trimmed (lightweight) effective Maven models.
+ * POM file may be overridden with -Dsrclib.benchmark.pom=FILE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MavenModelBenchmark {
+
+    @Param({"false", "true"})
+    public boolean lightweight;
+
+    private Path pomFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        pomFile = Paths.get(System.getProperty("srclib.benchmark.pom", "src/test/resources/pom-dependencies.xml"));
+        // resolving parents and imports once, so that measurements don't include downloads
+        new MavenProject(pomFile, new ArrayList<>(), null, lightweight).getMavenProject();
+    }
+
+    @Benchmark
+    public org.apache.maven.project.MavenProject getMavenProject() throws Exception {
+        return new MavenProject(pomFile, new ArrayList<>(), null, lightweight).getMavenProject();
+    }
+}
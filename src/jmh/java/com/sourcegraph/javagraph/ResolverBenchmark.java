@@ -0,0 +1,51 @@
+package com.sourcegraph.javagraph;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TreePath;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolution of reference origins with a warm resolver, i.e. after every origin was resolved once.
+ * Origins come from references produced from the fixture (see {@link BenchmarkSources})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ResolverBenchmark {
+
+    private Resolver resolver;
+
+    private List<Ref> refs;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSources.Attributed attributed = BenchmarkSources.attribute();
+        GraphData graph = new GraphData();
+        for (CompilationUnitTree unit : attributed.units) {
+            new TreeScanner(graph, attributed.trees).scan(new TreePath(unit), null);
+        }
+        refs = new ArrayList<>(graph.refs);
+
+        SourceUnit unit = new SourceUnit();
+        unit.Name = "benchmark";
+        resolver = new Resolver(BenchmarkSources.project(), unit, null);
+        for (Ref ref : refs) {
+            resolver.resolveOrigin(ref.defKey.getOrigin());
+        }
+    }
+
+    @Benchmark
+    public void resolveOrigin(Blackhole bh) throws Exception {
+        for (Ref ref : refs) {
+            bh.consume(resolver.resolveOrigin(ref.defKey.getOrigin()));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sourcegraph.javagraph;
+
+import com.google.gson.Gson;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TreePath;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON serialization of definitions and references produced from the fixture
+ * (see {@link BenchmarkSources}), output is discarded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean pretty;
+
+    private GraphData graph;
+
+    private Gson gson;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSources.Attributed attributed = BenchmarkSources.attribute();
+        graph = new GraphData();
+        for (CompilationUnitTree unit : attributed.units) {
+            new TreeScanner(graph, attributed.trees).scan(new TreePath(unit), null);
+        }
+        gson = JSONUtil.gson(pretty);
+    }
+
+    @Benchmark
+    public void defs() {
+        gson.toJson(graph.defs, NullWriter.NULL_WRITER);
+    }
+
+    @Benchmark
+    public void refs() {
+        gson.toJson(graph.refs, NullWriter.NULL_WRITER);
+    }
+}
@@ -0,0 +1,59 @@
+package com.sourcegraph.javagraph;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TreePath;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of per-node work done while scanning pre-attributed expression trees.
+ * Each invocation processes all nodes of the fixture (see {@link BenchmarkSources})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TreeBenchmark {
+
+    private BenchmarkSources.Attributed attributed;
+
+    @Setup
+    public void setUp() throws IOException {
+        attributed = BenchmarkSources.attribute();
+    }
+
+    @Benchmark
+    public void spansName(Blackhole bh) {
+        for (BenchmarkSources.Node node : attributed.nodes) {
+            bh.consume(node.spans.name(node.name, node.tree));
+        }
+    }
+
+    @Benchmark
+    public void elementPath(Blackhole bh) {
+        for (BenchmarkSources.Node node : attributed.nodes) {
+            bh.consume(ElementPath.get(node.unit, attributed.trees, node.element));
+        }
+    }
+
+    @Benchmark
+    public void originsForElement(Blackhole bh) {
+        for (BenchmarkSources.Node node : attributed.nodes) {
+            bh.consume(Origins.forElement(node.element));
+        }
+    }
+
+    @Benchmark
+    public GraphData treeScanner() {
+        GraphData graph = new GraphData();
+        for (CompilationUnitTree unit : attributed.units) {
+            new TreeScanner(graph, attributed.trees).scan(new TreePath(unit), null);
+        }
+        return graph;
+    }
+}
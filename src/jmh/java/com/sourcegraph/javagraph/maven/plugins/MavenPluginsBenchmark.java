@@ -0,0 +1,49 @@
+package com.sourcegraph.javagraph.maven.plugins;
+
+import com.google.common.reflect.ClassPath;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of Maven plugin discovery: service descriptor lookup (current) versus scanning of the classpath
+ * for {@link MavenPlugin} implementations (the way plugins were discovered before).
+ * Each measurement is taken in a fresh JVM
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class MavenPluginsBenchmark {
+
+    @Benchmark
+    public Collection<MavenPlugin> serviceLoader() {
+        Collection<MavenPlugin> plugins = new ArrayList<>();
+        for (MavenPlugin plugin : ServiceLoader.load(MavenPlugin.class, MavenPlugin.class.getClassLoader())) {
+            plugins.add(plugin);
+        }
+        return plugins;
+    }
+
+    @Benchmark
+    public Collection<MavenPlugin> classPathScan() throws IOException, ReflectiveOperationException {
+        Collection<MavenPlugin> plugins = new ArrayList<>();
+        ClassPath classPath = ClassPath.from(MavenPlugin.class.getClassLoader());
+        for (ClassPath.ClassInfo info : classPath.getTopLevelClasses(MavenPlugin.class.getPackage().getName())) {
+            Class<?> c = info.load();
+            if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+                continue;
+            }
+            if (MavenPlugin.class.isAssignableFrom(c)) {
+                plugins.add((MavenPlugin) c.newInstance());
+            }
+        }
+        return plugins;
+    }
+}
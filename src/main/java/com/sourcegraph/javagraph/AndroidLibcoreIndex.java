@@ -0,0 +1,271 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact sorted set of ASCII class names (foo/bar/Baz) stored as a front-coded byte array.
+ * Names are split into buckets of {@link #BUCKET_SIZE}, the first name of each bucket is stored as is, and the
+ * following ones as (length of prefix shared with previous name, suffix). Lookup performs binary search over
+ * bucket heads and then scans single bucket comparing names with a slice of a query string, without decoding
+ * names or allocating substrings.
+ * <p>
+ * Binary format: magic "SLCI", int number of names, int number of buckets, int[] bucket offsets, bucket data.
+ * Lengths inside of bucket data are stored as unsigned varints
+ * <p>
+ * Index is precompiled at build time from android-libcore.dat (see libcoreIndex task in build.gradle) by
+ * {@link #main(String[])}
+ */
+public class AndroidLibcoreIndex {
+
+    private static final int MAGIC = 0x534c4349;
+
+    private static final int BUCKET_SIZE = 16;
+
+    private final byte[] data;
+    private final int[] buckets;
+    private final int size;
+    private final int base;
+
+    private AndroidLibcoreIndex(byte[] data) throws IOException {
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(data));
+        if (is.readInt() != MAGIC) {
+            throw new IOException("Not an Android libcore index");
+        }
+        size = is.readInt();
+        buckets = new int[is.readInt()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = is.readInt();
+        }
+        this.data = data;
+        this.base = 12 + buckets.length * 4;
+    }
+
+    /**
+     * Reads index
+     *
+     * @param is stream to read index from
+     * @return index
+     * @throws IOException
+     */
+    public static AndroidLibcoreIndex read(InputStream is) throws IOException {
+        return new AndroidLibcoreIndex(IOUtils.toByteArray(is));
+    }
+
+    /**
+     * Builds index
+     *
+     * @param names names to include, must be sorted
+     * @return index
+     * @throws IOException
+     */
+    public static AndroidLibcoreIndex build(List<String> names) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        write(names, os);
+        return new AndroidLibcoreIndex(os.toByteArray());
+    }
+
+    /**
+     * Writes index
+     *
+     * @param names names to include, must be sorted
+     * @param os    stream to write index to
+     * @throws IOException
+     */
+    public static void write(List<String> names, OutputStream os) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        List<Integer> offsets = new ArrayList<>();
+        byte[] previous = null;
+        for (int i = 0; i < names.size(); i++) {
+            byte[] name = names.get(i).getBytes(StandardCharsets.US_ASCII);
+            if (previous != null && compare(previous, name) >= 0) {
+                throw new IllegalArgumentException("Names are not sorted or not unique: " + names.get(i));
+            }
+            if (i % BUCKET_SIZE == 0) {
+                offsets.add(body.size());
+                writeVarInt(body, name.length);
+                body.write(name);
+            } else {
+                int shared = 0;
+                int max = Math.min(previous.length, name.length);
+                while (shared < max && previous[shared] == name[shared]) {
+                    shared++;
+                }
+                writeVarInt(body, shared);
+                writeVarInt(body, name.length - shared);
+                body.write(name, shared, name.length - shared);
+            }
+            previous = name;
+        }
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(names.size());
+        out.writeInt(offsets.size());
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        body.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * @return number of names in index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param s     string to take name from
+     * @param start start of name in s, inclusive
+     * @param end   end of name in s, exclusive
+     * @return true if index contains name denoted by given slice of string
+     */
+    public boolean contains(CharSequence s, int start, int end) {
+        // rightmost bucket whose head is less than or equal to query
+        int low = 0;
+        int high = buckets.length - 1;
+        int bucket = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int pos = base + buckets[mid];
+            int length = readVarInt(pos);
+            pos += varIntSize(length);
+            int c = compare(pos, length, s, start, end);
+            if (c == 0) {
+                return true;
+            } else if (c < 0) {
+                bucket = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (bucket < 0) {
+            return false;
+        }
+
+        // scanning bucket, "matched" is a length of common prefix of query and current name
+        int queryLength = end - start;
+        int pos = base + buckets[bucket];
+        int length = readVarInt(pos);
+        pos += varIntSize(length);
+        int matched = commonPrefix(pos, length, s, start, end);
+        pos += length;
+        int count = Math.min(BUCKET_SIZE, size - bucket * BUCKET_SIZE);
+        for (int i = 1; i < count; i++) {
+            int shared = readVarInt(pos);
+            pos += varIntSize(shared);
+            int suffix = readVarInt(pos);
+            pos += varIntSize(suffix);
+            if (shared < matched) {
+                // name differs from previous one where previous one matched query, it's greater than query
+                return false;
+            }
+            if (shared == matched) {
+                int common = commonPrefix(pos, suffix, s, start + matched, end);
+                int nameLength = shared + suffix;
+                matched += common;
+                if (matched == queryLength && matched == nameLength) {
+                    return true;
+                }
+                if (matched == queryLength) {
+                    // query is a prefix of name
+                    return false;
+                }
+                if (matched < nameLength && (data[pos + common] & 0xff) > s.charAt(start + matched)) {
+                    return false;
+                }
+            }
+            // shared > matched: name agrees with previous one which is less than query
+            pos += suffix;
+        }
+        return false;
+    }
+
+    /**
+     * Converts text list of names into binary index
+     *
+     * @param args source (text file, one name per line, sorted) and target (index file)
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AndroidLibcoreIndex SOURCE TARGET");
+            System.exit(1);
+        }
+        List<String> names = new ArrayList<>();
+        for (String line : FileUtils.readLines(new File(args[0]), StandardCharsets.US_ASCII)) {
+            if (!line.isEmpty()) {
+                names.add(line);
+            }
+        }
+        Collections.sort(names);
+        File target = new File(args[1]);
+        FileUtils.forceMkdir(target.getAbsoluteFile().getParentFile());
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(target))) {
+            write(names, os);
+        }
+    }
+
+    private int compare(int pos, int length, CharSequence s, int start, int end) {
+        int common = commonPrefix(pos, length, s, start, end);
+        if (common < length && common < end - start) {
+            return (data[pos + common] & 0xff) - s.charAt(start + common);
+        }
+        return length - (end - start);
+    }
+
+    private int commonPrefix(int pos, int length, CharSequence s, int start, int end) {
+        int max = Math.min(length, end - start);
+        int i = 0;
+        while (i < max && (data[pos + i] & 0xff) == s.charAt(start + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private int readVarInt(int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarInt(OutputStream os, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            os.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        os.write(value);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int max = Math.min(a.length, b.length);
+        for (int i = 0; i < max; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+        }
+        return a.length - b.length;
+    }
+}
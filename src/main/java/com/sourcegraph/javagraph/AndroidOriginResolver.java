@@ -7,7 +7,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,19 +20,40 @@ public class AndroidOriginResolver {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AndroidOriginResolver.class);
 
-    private static List<String> libcoreClasses;
+    /**
+     * Libcore classes index, loaded on first use
+     */
+    private static class Holder {
+
+        private static final AndroidLibcoreIndex libcoreClasses = load();
 
-    static {
-        InputStream is = AndroidOriginResolver.class.getResourceAsStream("/android-libcore.dat");
-        if (is != null) {
+        /**
+         * Loads index precompiled at build time or builds it from text list if there is no precompiled one
+         * (running from IDE for example)
+         */
+        private static AndroidLibcoreIndex load() {
             try {
-                libcoreClasses = IOUtils.readLines(is);
-            } catch (IOException e) {
+                try (InputStream is = AndroidOriginResolver.class.getResourceAsStream("/android-libcore.idx")) {
+                    if (is != null) {
+                        return AndroidLibcoreIndex.read(is);
+                    }
+                }
+                try (InputStream is = AndroidOriginResolver.class.getResourceAsStream("/android-libcore.dat")) {
+                    if (is != null) {
+                        List<String> names = IOUtils.readLines(is, StandardCharsets.US_ASCII);
+                        names.removeIf(String::isEmpty);
+                        Collections.sort(names);
+                        return AndroidLibcoreIndex.build(names);
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
                 LOGGER.warn("Failed to load Android libcore classes list", e);
-                libcoreClasses = new ArrayList<>();
             }
-        } else {
-            libcoreClasses = new ArrayList<>();
+            try {
+                return AndroidLibcoreIndex.build(Collections.emptyList());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
         }
     }
 
@@ -42,42 +63,32 @@ public class AndroidOriginResolver {
      * @return resolved target or null if resolution failed
      */
     public static ResolvedTarget resolve(URI origin) {
-        String topClassName = extractTopClassName(origin);
-        if (topClassName == null) {
+        // looking for path to top-level class (foo/bar/bazz) in jar URI supposed to be in form
+        // jar:file..!/path/to/classname.class, inner classes are reduced to top-level ones
+        String path = origin.toString();
+        int start = path.lastIndexOf('!');
+        if (start == -1) {
             return null;
         }
-        int index = Collections.binarySearch(libcoreClasses, topClassName);
-        if (index >= 0) {
-            return ResolvedTarget.androidCore();
-        } else {
-            return ResolvedTarget.androidSDK();
+        start += 2;
+        int end = -1;
+        for (int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '$') {
+                end = i;
+                break;
+            }
+            if (c == '.' && end == -1) {
+                end = i;
+            }
         }
-    }
-
-    /**
-     * Extracts top-level class name from jar URI (supposed to be in form jar:file..!path/to/classname.class)
-     * @param origin jar URI
-     * @return extracted path to top-level class in form foo/bar/bazz or null
-     */
-    private static String extractTopClassName(URI origin) {
-        String path = origin.toString();
-        // retrieve part after !/ (path to class file)
-        int i = path.lastIndexOf('!');
-        if (i != -1) {
-            path = path.substring(i + 2);
-        } else {
+        if (end == -1 || start > end) {
             return null;
         }
-        i = path.indexOf('$');
-        if (i != -1) {
-            // inner class, leaving only top-level class element
-            return path.substring(0, i);
-        }
-        i = path.indexOf('.');
-        if (i != -1) {
-            // removing everything after . (stripping '.class')
-            return path.substring(0, i);
+        if (Holder.libcoreClasses.contains(path, start, end)) {
+            return ResolvedTarget.androidCore();
+        } else {
+            return ResolvedTarget.androidSDK();
         }
-        return null;
     }
 }
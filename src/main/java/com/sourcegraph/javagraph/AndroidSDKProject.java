@@ -1,18 +1,19 @@
 package com.sourcegraph.javagraph;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.maven.model.building.ModelBuildingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +29,16 @@ public class AndroidSDKProject implements Project {
 
     private static final String MARKER = "AndroidSDK";
 
+    /**
+     * Maximum number of .aidl files passed to a single aidl invocation
+     */
+    private static final int AIDL_BATCH_SIZE = 100;
+
+    /**
+     * File (relative to current working directory) to keep content hashes of processed .aidl files in
+     */
+    private static final String AIDL_HASHES_FILE = ".aidl-srclib/aidl-hashes.properties";
+
     public AndroidSDKProject(SourceUnit unit) {
     }
 
@@ -134,8 +145,10 @@ public class AndroidSDKProject implements Project {
             return Collections.emptyList();
         }
 
-        processAidlFiles();
-        return collectFiles("java");
+        Map<String, List<String>> files = collectFiles("java", "aidl");
+        Set<String> javaFiles = new LinkedHashSet<>(files.get("java"));
+        javaFiles.addAll(processAidlFiles(files.get("aidl")));
+        return new ArrayList<>(javaFiles);
     }
 
     /**
@@ -218,73 +231,245 @@ public class AndroidSDKProject implements Project {
     }
 
     /**
-     * Generates .java files from .aidl files if needed
+     * Generates .java files from .aidl files if needed. Files are processed in parallel, if aidl tool supports
+     * multiple inputs they are passed in batches (grouped by working directory).
+     * Generation is skipped if .java file exists and .aidl file's content hash didn't change since the last time
+     * @param aidlFiles .aidl files to process
+     * @return generated .java files (including up to date ones)
      * @throws IOException
      */
-    private static void processAidlFiles() throws IOException {
+    private static Collection<String> processAidlFiles(List<String> aidlFiles) throws IOException {
+        if (aidlFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
         String aidlCommand = getAidlCommand();
         if (aidlCommand == null) {
             LOGGER.debug("aidl command is not found");
-            return;
+            return Collections.emptyList();
         }
         LOGGER.debug("Using aidl command {}", aidlCommand);
+        return processAidlFiles(aidlFiles, aidlCommand, PathUtil.CWD.resolve(AIDL_HASHES_FILE).toFile());
+    }
+
+    /**
+     * Generates .java files from .aidl files using a given aidl program. Stale .java files of changed .aidl files
+     * are removed before processing, so that failed generation is retried next time
+     * @param aidlFiles .aidl files to process
+     * @param aidlCommand aidl program
+     * @param hashesFile file to keep content hashes of processed .aidl files in
+     * @return generated .java files (including up to date ones)
+     * @throws IOException
+     */
+    static Collection<String> processAidlFiles(List<String> aidlFiles,
+                                               String aidlCommand,
+                                               File hashesFile) throws IOException {
 
-        List<String> aidlFiles = collectFiles("aidl");
         // collect include locations
         Collection<String> includes = aidlFiles.stream().
                 map(aidlFile -> "-I" + getAidlWorkingDir(PathUtil.CWD.resolve(aidlFile)).
                         getAbsoluteFile().toString()).
-                collect(Collectors.toSet());
+                collect(Collectors.toCollection(TreeSet::new));
 
         List<String> cmdArgs = new ArrayList<>();
         cmdArgs.add(aidlCommand);
         cmdArgs.addAll(includes);
 
+        Properties hashes = loadAidlHashes(hashesFile);
+        Properties newHashes = new Properties();
+
+        // working directory => .aidl files to process there
+        Map<File, List<File>> pending = new TreeMap<>();
         for (String aidlFile : aidlFiles) {
-            processAidlFile(cmdArgs, aidlFile);
+            File source = new File(aidlFile);
+            String hash;
+            try (InputStream is = new FileInputStream(source)) {
+                hash = DigestUtils.sha1Hex(is);
+            }
+            newHashes.setProperty(source.getAbsolutePath(), hash);
+            String oldHash = hashes.getProperty(source.getAbsolutePath());
+            File target = getAidlTarget(source);
+            if (target.exists()) {
+                if (oldHash == null || oldHash.equals(hash)) {
+                    continue;
+                }
+                FileUtils.forceDelete(target);
+            }
+            pending.computeIfAbsent(getAidlWorkingDir(source.toPath()).getAbsoluteFile(),
+                    k -> new ArrayList<>()).add(source);
         }
+
+        if (!pending.isEmpty()) {
+            boolean multipleInputs = supportsMultipleInputs(aidlCommand);
+            LOGGER.info("Processing {} AIDL files", pending.values().stream().mapToInt(List::size).sum());
+
+            ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            Collection<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<File, List<File>> entry : pending.entrySet()) {
+                if (multipleInputs) {
+                    List<File> sources = entry.getValue();
+                    for (int i = 0; i < sources.size(); i += AIDL_BATCH_SIZE) {
+                        List<File> batch = sources.subList(i, Math.min(sources.size(), i + AIDL_BATCH_SIZE));
+                        futures.add(executorService.submit(() -> processAidlFiles(cmdArgs, entry.getKey(), batch)));
+                    }
+                } else {
+                    for (File source : entry.getValue()) {
+                        futures.add(executorService.submit(() -> processAidlFile(cmdArgs, entry.getKey(), source)));
+                    }
+                }
+            }
+            executorService.shutdown();
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                executorService.shutdownNow();
+                throw new IOException("Unable to process AIDL files", e);
+            }
+        }
+
+        Collection<String> ret = new ArrayList<>();
+        for (String aidlFile : aidlFiles) {
+            File target = getAidlTarget(new File(aidlFile));
+            if (target.isFile()) {
+                ret.add(target.getAbsolutePath());
+            } else {
+                // to retry next time
+                newHashes.remove(new File(aidlFile).getAbsolutePath());
+            }
+        }
+        saveAidlHashes(newHashes, hashesFile);
+        return ret;
     }
 
     /**
-     * Process single .aidl file
+     * Process single .aidl file using classic command line (aidl [OPTIONS] INPUT), .java file is generated
+     * next to .aidl one
      * @param cmdArgs command line arguments to pass to aidl program
-     * @param aidlFile file to process
+     * @param workingDir working directory
+     * @param source file to process
      */
     private static void processAidlFile(List<String> cmdArgs,
-                                        String aidlFile) {
-        File source = new File(aidlFile);
-        File target = new File(source.getParentFile(),
-                source.getName().substring(0, source.getName().lastIndexOf(".")) + ".java");
-        if (target.exists()) {
-            return;
-        }
+                                        File workingDir,
+                                        File source) {
         LOGGER.debug("Processing AIDL file {}", source);
-        ProcessBuilder pb = new ProcessBuilder();
-        File workingDir = getAidlWorkingDir(source.toPath()).getAbsoluteFile();
         List<String> args = new ArrayList<>(cmdArgs);
         args.add(getAidlArgument(source.toPath()));
+        runAidl(args, workingDir, source.toString());
+    }
+
+    /**
+     * Process multiple .aidl files using command line aidl --lang=java -o OUTPUT_DIR [OPTIONS] INPUT...
+     * Output directory is set to working directory thus .java files are generated next to .aidl ones
+     * @param cmdArgs command line arguments to pass to aidl program
+     * @param workingDir working directory
+     * @param sources files to process
+     */
+    private static void processAidlFiles(List<String> cmdArgs,
+                                         File workingDir,
+                                         List<File> sources) {
+        LOGGER.debug("Processing {} AIDL files in {}", sources.size(), workingDir);
+        List<String> args = new ArrayList<>(cmdArgs);
+        args.add(1, "--lang=java");
+        args.add(2, "-o");
+        args.add(3, workingDir.toString());
+        for (File source : sources) {
+            args.add(getAidlArgument(source.toPath()));
+        }
+        runAidl(args, workingDir, sources.toString());
+    }
+
+    /**
+     * Runs aidl program and waits for it
+     * @param args command line
+     * @param workingDir working directory
+     * @param sources description of files being processed to use in log messages
+     */
+    private static void runAidl(List<String> args, File workingDir, String sources) {
+        ProcessBuilder pb = new ProcessBuilder();
         pb.command(args);
         pb.redirectErrorStream(true);
         pb.directory(workingDir);
 
         try {
             Process process = pb.start();
+            String message;
+            try (InputStream is = process.getInputStream()) {
+                message = IOUtils.toString(is);
+            }
             int status = process.waitFor();
             if (status != 0) {
-                try (InputStream is = process.getInputStream()) {
-                    String message = IOUtils.toString(is);
-                    LOGGER.warn("Unable to process AIDL file {} - exit status {}, output was: {}", source, status, message);
-                }
+                LOGGER.warn("Unable to process AIDL file {} - exit status {}, output was: {}", sources, status, message);
             }
         } catch (IOException | InterruptedException ex) {
             LOGGER.warn("Unable to process AIDL file {} by running command {} in working directory {}",
-                    source,
+                    sources,
                     pb.command(),
                     pb.directory(),
                     ex);
         }
     }
 
+    /**
+     * @param aidlCommand aidl program
+     * @return true if aidl program supports new command line syntax that accepts multiple input files
+     */
+    private static boolean supportsMultipleInputs(String aidlCommand) {
+        try {
+            Process process = new ProcessBuilder(aidlCommand, "--help").redirectErrorStream(true).start();
+            String help;
+            try (InputStream is = process.getInputStream()) {
+                help = IOUtils.toString(is);
+            }
+            process.waitFor();
+            return help.contains("--lang");
+        } catch (IOException | InterruptedException ex) {
+            LOGGER.debug("Unable to run {} --help", aidlCommand, ex);
+            return false;
+        }
+    }
+
+    /**
+     * @param source .aidl file
+     * @return .java file produced from a given .aidl file
+     */
+    private static File getAidlTarget(File source) {
+        return new File(source.getParentFile(),
+                source.getName().substring(0, source.getName().lastIndexOf(".")) + ".java");
+    }
+
+    /**
+     * @param file file to read hashes from
+     * @return content hashes of .aidl files (absolute path => SHA-1) recorded after last processing
+     */
+    private static Properties loadAidlHashes(File file) {
+        Properties hashes = new Properties();
+        if (file.isFile()) {
+            try (InputStream is = new FileInputStream(file)) {
+                hashes.load(is);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read AIDL hashes {}", file, e);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Saves content hashes of processed .aidl files
+     * @param hashes hashes to save
+     * @param file file to write hashes to
+     */
+    private static void saveAidlHashes(Properties hashes, File file) {
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            try (OutputStream os = new FileOutputStream(file)) {
+                hashes.store(os, null);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write AIDL hashes {}", file, e);
+        }
+    }
+
     /**
      * @param p path to .aidl file
      * @return working directory to process given aidl file, usually all components down to "java".
@@ -334,42 +519,46 @@ public class AndroidSDKProject implements Project {
     }
 
     /**
-     * Collects files in current working directory
-     * @param extension extension to check for, for example "java"
-     * @return list of found files in current working directory (including only needed to build framework project)
+     * Collects files in current working directory, every directory is visited once
+     * @param extensions extensions to check for, for example "java"
+     * @return map (extension => list of found files in current working directory (including only needed to build
+     * framework project))
      */
-    private static List<String> collectFiles(String extension) {
-        List<String> files = new ArrayList<>();
-        collectFiles(files, "core/java", extension);
-        collectFiles(files, "drm/java", extension);
-        collectFiles(files, "graphics/java", extension);
-        collectFiles(files, "keystore/java", extension);
-        collectFiles(files, "location/java", extension);
-        collectFiles(files, "media/java", extension);
-        collectFiles(files, "opengl/java", extension);
-        collectFiles(files, "rs/java", extension);
-        collectFiles(files, "sax/java", extension);
-        collectFiles(files, "telecomm/java", extension);
-        collectFiles(files, "telephony/java", extension);
-        collectFiles(files, "wifi/java", extension);
-        collectFiles(files, "packages/services/PacProcessor", extension);
+    private static Map<String, List<String>> collectFiles(String... extensions) {
+        Map<String, List<String>> files = new HashMap<>();
+        for (String extension : extensions) {
+            files.put(extension, new ArrayList<>());
+        }
+        collectFiles(files, "core/java", extensions);
+        collectFiles(files, "drm/java", extensions);
+        collectFiles(files, "graphics/java", extensions);
+        collectFiles(files, "keystore/java", extensions);
+        collectFiles(files, "location/java", extensions);
+        collectFiles(files, "media/java", extensions);
+        collectFiles(files, "opengl/java", extensions);
+        collectFiles(files, "rs/java", extensions);
+        collectFiles(files, "sax/java", extensions);
+        collectFiles(files, "telecomm/java", extensions);
+        collectFiles(files, "telephony/java", extensions);
+        collectFiles(files, "wifi/java", extensions);
+        collectFiles(files, "packages/services/PacProcessor", extensions);
         return files;
     }
 
     /**
      * Collects files in subdirectory of current working directory
-     * @param files list to fill with found files
+     * @param files map (extension => list of files) to fill with found files
      * @param directory sub-path in current working directory to search files in
-     * @param extension extension to check for, for example "java"
+     * @param extensions extensions to check for, for example "java"
      */
 
-    private static void collectFiles(Collection<String> files, String directory, String extension) {
+    private static void collectFiles(Map<String, List<String>> files, String directory, String... extensions) {
         File root = new File(directory);
         if (root.isDirectory()) {
-            files.addAll(FileUtils.listFiles(root, new String[]{extension}, true).
-                    stream().
-                    map(File::getAbsolutePath).
-                    collect(Collectors.toList()));
+            for (File file : FileUtils.listFiles(root, extensions, true)) {
+                String extension = FilenameUtils.getExtension(file.getName());
+                files.get(extension).add(file.getAbsolutePath());
+            }
         }
     }
 
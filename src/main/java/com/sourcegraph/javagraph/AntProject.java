@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class AntProject implements Project {
@@ -23,9 +24,9 @@ public class AntProject implements Project {
     private SourceUnit unit;
 
     /**
-     * Keeps mapping between JAR files and dependencies computed via JAR's SHA1
+     * Name of Ant project reference to keep evaluation state in
      */
-    private static Map<Path, RawDependency> dependencyCache = new HashMap<>();
+    private static final String STATE_REFERENCE = "srclib.state";
 
     /**
      * This set keeps known Ant types that might be executed while collecting data
@@ -75,8 +76,6 @@ public class AntProject implements Project {
         executables.add("javacc");
     }
 
-    private static ErrorTolerantJavac lastJavac;
-
     public AntProject(SourceUnit unit) {
         this.unit = unit;
     }
@@ -137,27 +136,86 @@ public class AntProject implements Project {
         LOGGER.debug("Retrieving source units");
 
         // step 1 : process all pom.xml files
-        Collection<Path> buildXmlFiles = ScanUtil.findMatchingFiles("build.xml");
+        Collection<SourceUnit> ret = getSourceUnits(new TreeSet<>(ScanUtil.findMatchingFiles("build.xml")));
 
-        Collection<SourceUnit> ret = new ArrayList<>();
+        collectDependencies(ret);
+
+        LOGGER.debug("Retrieved source units");
+
+        return ret;
+    }
 
+    /**
+     * Evaluates given build.xml files concurrently, each one in its own Ant project
+     *
+     * @param buildXmlFiles build.xml files to process
+     * @return source units made of build.xml files that were processed successfully, in the original order
+     * @throws IOException
+     */
+    static Collection<SourceUnit> getSourceUnits(Collection<Path> buildXmlFiles) throws IOException {
+        // each build.xml is evaluated in its own Ant project, results are collected in the original order
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(buildXmlFiles.size(), Runtime.getRuntime().availableProcessors())));
+        Collection<Future<SourceUnit>> futures = new ArrayList<>();
         for (Path buildXml : buildXmlFiles) {
+            futures.add(executorService.submit(() -> {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Processing Ant file {}", buildXml.toAbsolutePath());
+                }
+                try {
+                    return getSourceUnit(buildXml);
+                } catch (Exception e) {
+                    LOGGER.warn("Error processing Ant file {}", buildXml.toAbsolutePath(), e);
+                    return null;
+                }
+            }));
+        }
+        executorService.shutdown();
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Processing Ant file {}", buildXml.toAbsolutePath());
-            }
-            try {
-                ret.add(getSourceUnit(buildXml));
-            } catch (Exception e) {
-                LOGGER.warn("Error processing Ant file {}", buildXml.toAbsolutePath(), e);
+        Collection<SourceUnit> ret = new ArrayList<>();
+        try {
+            for (Future<SourceUnit> future : futures) {
+                SourceUnit unit = future.get();
+                if (unit != null) {
+                    ret.add(unit);
+                }
             }
+        } catch (InterruptedException | ExecutionException e) {
+            executorService.shutdownNow();
+            throw new IOException("Unable to process Ant files", e);
         }
-
-        LOGGER.debug("Retrieved source units");
-
         return ret;
     }
 
+    /**
+     * Identifies JAR files from units' classpath, JARs of all units are processed in one batch
+     *
+     * @param units units to add dependencies to
+     */
+    @SuppressWarnings("unchecked")
+    private static void collectDependencies(Collection<SourceUnit> units) {
+        Collection<Path> jars = new LinkedHashSet<>();
+        for (SourceUnit unit : units) {
+            for (String item : (Collection<String>) unit.Data.get("ClassPath")) {
+                File file = new File(item);
+                if (file.isFile()) {
+                    jars.add(file.toPath());
+                }
+            }
+        }
+        Map<Path, RawDependency> identified = MavenCentralUtils.identify(jars);
+        for (SourceUnit unit : units) {
+            for (String item : (Collection<String>) unit.Data.get("ClassPath")) {
+                RawDependency dependency = identified.get(new File(item).toPath());
+                if (dependency != null) {
+                    dependency.file = item;
+                    dependency.scope = StringUtils.EMPTY;
+                    unit.Dependencies.add(dependency);
+                }
+            }
+        }
+    }
+
     public static boolean is(SourceUnit unit) {
         return unit.Data.containsKey(BUILD_XML_PROPERTY);
     }
@@ -190,6 +248,9 @@ public class AntProject implements Project {
 
         project.addReference(ComponentHelper.COMPONENT_HELPER_REFERENCE, componentHelper);
 
+        EvaluationState state = new EvaluationState();
+        project.addReference(STATE_REFERENCE, state);
+
         // alexsaveliev: Using special implementations of javac, fileset, path, and uptodate typedefs
         // to ignore missing directories errors. Ant scripts usually make directories before
         // compiling files but we'd like to collect all the available files and directories
@@ -239,9 +300,10 @@ public class AntProject implements Project {
                     prepare(project, target);
 
                     MacroInstance macroinstance = (MacroInstance) task.getRuntimeConfigurableWrapper().getProxy();
+                    state.lastJavac = null;
                     macroinstance.execute();
 
-                    javac = lastJavac;
+                    javac = state.lastJavac;
                 } else {
                     LOGGER.debug("Found javac {}:{}", target.getName(), task.getTaskName());
                     prepare(project, target);
@@ -287,27 +349,6 @@ public class AntProject implements Project {
 
         unit.Files = new LinkedList<>(files);
 
-        for (String item : classPath) {
-            File file = new File(item);
-            if (file.isFile()) {
-
-                Path jarPath = file.toPath();
-                RawDependency dependency;
-                if (dependencyCache.containsKey(jarPath)) {
-                    dependency = dependencyCache.get(jarPath);
-                } else {
-                    dependency = MavenCentralUtils.searchInCentral(jarPath);
-                    if (dependency != null) {
-                        dependency.file = file.toString();
-                        dependency.scope = StringUtils.EMPTY;
-                    }
-                    dependencyCache.put(jarPath, dependency);
-                }
-                if (dependency != null) {
-                    unit.Dependencies.add(dependency);
-                }
-            }
-        }
         sourceEncoding = nonVariable(sourceEncoding);
         sourceVersion = nonVariable(sourceVersion);
 
@@ -471,6 +512,16 @@ public class AntProject implements Project {
         return project.topoSort(target.getName(), project.getTargets());
     }
 
+    /**
+     * Per-build.xml evaluation state, kept as a reference in Ant project
+     */
+    private static class EvaluationState {
+        /**
+         * Last executed javac task, used to find out what javac inside of macrodef was called with
+         */
+        ErrorTolerantJavac lastJavac;
+    }
+
     /**
      * The main purpose of this hack around "javac" Ant's task is to tolerate missing directories.
      * For example, Ant may create "build" directory and use it as a path element later while we don't making any dirs
@@ -602,7 +653,10 @@ public class AntProject implements Project {
         @Override
         public void execute() throws BuildException {
 
-            lastJavac = this;
+            EvaluationState state = getProject().getReference(STATE_REFERENCE);
+            if (state != null) {
+                state.lastJavac = this;
+            }
 
             resetFileLists();
 
@@ -120,6 +120,16 @@ public class BuildAnalysis {
          */
         public Collection<String[]> sourceDirs; // contains triplets: source unit name, source unit version, directory
 
+        /**
+         * List of test source files
+         */
+        public Collection<String> testSources;
+
+        /**
+         * List of test source directories
+         */
+        public Collection<String[]> testSourceDirs; // contains triplets: source unit name, source unit version, directory
+
         /**
          * Classpath used to compile module
          */
@@ -166,6 +176,8 @@ public class BuildAnalysis {
             dependencies = new HashSet<>();
             sources = new HashSet<>();
             sourceDirs = new ArrayList<>();
+            testSources = new HashSet<>();
+            testSourceDirs = new ArrayList<>();
             classPath = new HashSet<>();
             bootClassPath = new HashSet<>();
             projectDependencies = new HashSet<>();
@@ -177,7 +189,8 @@ public class BuildAnalysis {
     }
 
     /**
-     * Extracts meta information from Gradle file by running gradle command and passing special init script to it
+     * Extracts meta information from Gradle file by running gradle command and passing special init script to it.
+     * Scan does not use it at the moment, Gradle source units are discovered by {@link GradleParser}
      */
     public static class Gradle {
 
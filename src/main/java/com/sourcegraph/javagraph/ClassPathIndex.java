@@ -0,0 +1,262 @@
+package com.sourcegraph.javagraph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of packages provided by class path JAR files. Javac probes every class path entry for every
+ * package it looks up, so dropping entries that can't provide anything used by graphed sources reduces attribution
+ * cost. Lists are read from JAR's central directory only (which is memory-mapped by java.util.zip) and cached
+ * for the lifetime of the process, so units sharing dependencies (f.e. in graph-all) read each JAR once.
+ * Class lists are much larger, they are read on demand by {@link Classes} and are not cached process-wide
+ */
+public class ClassPathIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassPathIndex.class);
+
+    /**
+     * Qualified names in source code: dotted lowercase prefix (package candidate) followed by a capitalized name
+     */
+    private static final Pattern QUALIFIED_NAME = Pattern.compile("\\b([a-z_$][\\w$]*(?:\\s*\\.\\s*[a-z_$][\\w$]*)*)\\s*\\.\\s*[A-Z]");
+
+    /**
+     * Package declarations and on-demand imports
+     */
+    private static final Pattern PACKAGE = Pattern.compile("\\b(?:package|import)\\s+(?:static\\s+)?([\\w$.\\s]+?)\\s*(?:\\.\\s*\\*\\s*)?;");
+
+    /**
+     * JAR file => packages it provides
+     */
+    private static final Map<File, IndexedJar> JARS = new ConcurrentHashMap<>();
+
+    private ClassPathIndex() {
+    }
+
+    /**
+     * Removes nonexistent and duplicate class path entries
+     *
+     * @param classPath class path to clean
+     * @return class path without nonexistent and duplicate entries, order is preserved
+     */
+    public static List<File> clean(Collection<File> classPath) {
+        Set<File> ret = new LinkedHashSet<>();
+        for (File entry : classPath) {
+            if (entry.exists()) {
+                ret.add(entry);
+            }
+        }
+        if (ret.size() < classPath.size()) {
+            LOGGER.info("Removed {} nonexistent or duplicate class path entries out of {}",
+                    classPath.size() - ret.size(), classPath.size());
+        }
+        return new ArrayList<>(ret);
+    }
+
+    /**
+     * Restricts class path to directories and JAR files that provide packages referenced by given sources
+     * (through package declarations, imports, and qualified names)
+     *
+     * @param classPath class path to prune
+     * @param files     source files
+     * @return pruned class path, order is preserved
+     */
+    public static List<File> prune(List<File> classPath, Iterable<? extends JavaFileObject> files) {
+        Set<String> packages = collectReferencedPackages(files);
+        List<File> ret = new ArrayList<>();
+        for (File entry : classPath) {
+            // directories are cheap to probe and may be incomplete at this point (f.e. stubs being generated)
+            if (!entry.isFile()) {
+                ret.add(entry);
+                continue;
+            }
+            Set<String> provided = getPackages(entry);
+            if (provided == null || !Collections.disjoint(provided, packages)) {
+                ret.add(entry);
+            }
+        }
+        LOGGER.info("Pruned {} out of {} class path entries not providing any of {} referenced packages",
+                classPath.size() - ret.size(), classPath.size(), packages.size());
+        return ret;
+    }
+
+    /**
+     * @param jar JAR file
+     * @return packages provided by a given JAR file or null if file cannot be read
+     */
+    static Set<String> getPackages(File jar) {
+        IndexedJar indexed = getIndex(jar);
+        return indexed.readable ? indexed.packages : null;
+    }
+
+    /**
+     * @param jar  JAR file
+     * @param name qualified name of class or package
+     * @return true if JAR file provides a package named class or package may belong to (name itself or any of its
+     * dotted prefixes)
+     */
+    static boolean mayProvide(File jar, String name) {
+        Set<String> packages = getPackages(jar);
+        if (packages == null) {
+            return false;
+        }
+        for (int pos = name.length(); pos > 0; pos = name.lastIndexOf('.', pos - 1)) {
+            if (packages.contains(name.substring(0, pos))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param jar JAR file
+     * @return packages provided by a given JAR file, unreadable files are cached as well
+     */
+    private static IndexedJar getIndex(File jar) {
+        IndexedJar indexed = JARS.get(jar);
+        if (indexed != null && indexed.lastModified == jar.lastModified()) {
+            return indexed;
+        }
+        indexed = new IndexedJar();
+        indexed.lastModified = jar.lastModified();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                int pos = name.lastIndexOf('/');
+                if (pos > 0 && name.endsWith(".class")) {
+                    indexed.packages.add(name.substring(0, pos).replace('/', '.'));
+                }
+            }
+            indexed.readable = true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read {}", jar, e);
+        }
+        JARS.put(jar, indexed);
+        return indexed;
+    }
+
+    /**
+     * Collects names that may denote packages in a given source files. Since lexical scan can't tell package from
+     * outer class name, every dotted prefix is collected
+     *
+     * @param files source files
+     * @return names that may denote packages
+     */
+    static Set<String> collectReferencedPackages(Iterable<? extends JavaFileObject> files) {
+        Set<String> ret = new HashSet<>();
+        for (JavaFileObject file : files) {
+            CharSequence content;
+            try {
+                content = file.getCharContent(true);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read {}", file.getName(), e);
+                continue;
+            }
+            Matcher matcher = QUALIFIED_NAME.matcher(content);
+            while (matcher.find()) {
+                addPrefixes(matcher.group(1), ret);
+            }
+            matcher = PACKAGE.matcher(content);
+            while (matcher.find()) {
+                addPrefixes(matcher.group(1), ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Adds all dotted prefixes of a given name (including name itself), f.e. a, a.b, a.b.c for a.b.c
+     *
+     * @param name   name, may contain whitespace around dots
+     * @param target set to add prefixes to
+     */
+    private static void addPrefixes(String name, Set<String> target) {
+        String normalized = name.replaceAll("\\s+", "");
+        for (int pos = normalized.indexOf('.'); pos >= 0; pos = normalized.indexOf('.', pos + 1)) {
+            target.add(normalized.substring(0, pos));
+        }
+        target.add(normalized);
+    }
+
+    /**
+     * Cached package list of a JAR file
+     */
+    private static class IndexedJar {
+        long lastModified;
+        boolean readable;
+        final Set<String> packages = new HashSet<>();
+    }
+
+    /**
+     * Looks up classes provided by class path entries. Class list of a JAR file is read only if JAR provides
+     * a package class may belong to, lists are kept by lookup object only
+     */
+    static class Classes {
+
+        private final List<File> classPath;
+
+        /**
+         * JAR file => classes it provides (nested classes are separated by dot)
+         */
+        private final Map<File, Set<String>> jars = new HashMap<>();
+
+        /**
+         * @param classPath class path entries (directories and JAR files)
+         */
+        Classes(List<File> classPath) {
+            this.classPath = classPath;
+        }
+
+        /**
+         * @param name qualified class name, nested classes are separated by dot as well
+         * @return true if class is provided by one of class path entries
+         */
+        boolean contains(String name) {
+            for (File entry : classPath) {
+                if (entry.isDirectory()) {
+                    if (new File(entry, name.replace('.', File.separatorChar) + ".class").isFile()) {
+                        return true;
+                    }
+                } else if (entry.isFile() && ClassPathIndex.mayProvide(entry, name) &&
+                        getClasses(entry).contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param jar JAR file
+         * @return classes provided by a given JAR file
+         */
+        private Set<String> getClasses(File jar) {
+            return jars.computeIfAbsent(jar, k -> {
+                Set<String> classes = new HashSet<>();
+                try (ZipFile zipFile = new ZipFile(jar)) {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(".class")) {
+                            classes.add(name.substring(0, name.length() - ".class".length()).
+                                    replace('/', '.').
+                                    replace('$', '.'));
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to read {}", jar, e);
+                }
+                return classes;
+            });
+        }
+    }
+}
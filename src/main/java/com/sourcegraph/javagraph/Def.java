@@ -1,9 +1,14 @@
 package com.sourcegraph.javagraph;
 
-import com.google.gson.*;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
+import javax.lang.model.element.ElementKind;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Definition object
@@ -102,80 +107,117 @@ public class Def {
     }
 
     /**
-     * JSON serialization rules for definition objects
+     * Classification of Java element kinds used to compute srclib's kind and locality of definitions
      */
-    static class JSONSerializer implements JsonSerializer<Def> {
+    enum Kind {
+        PACKAGE("package", false),
+        TYPE("type", false),
+        FUNC("func", false),
+        MEMBER("var", false),
+        VAR("var", true);
+
+        private static final Map<String, Kind> KINDS = new HashMap<>();
+
+        static {
+            for (ElementKind elementKind : ElementKind.values()) {
+                KINDS.put(elementKind.name(), VAR);
+            }
+            KINDS.put(ElementKind.PACKAGE.name(), PACKAGE);
+            KINDS.put(ElementKind.ENUM.name(), TYPE);
+            KINDS.put(ElementKind.CLASS.name(), TYPE);
+            KINDS.put(ElementKind.INTERFACE.name(), TYPE);
+            KINDS.put(ElementKind.ANNOTATION_TYPE.name(), TYPE);
+            KINDS.put(ElementKind.METHOD.name(), FUNC);
+            KINDS.put(ElementKind.CONSTRUCTOR.name(), FUNC);
+            KINDS.put(ElementKind.ENUM_CONSTANT.name(), MEMBER);
+            KINDS.put(ElementKind.FIELD.name(), MEMBER);
+        }
+
+        /**
+         * srclib's kind
+         */
+        final String srclibKind;
+
+        /**
+         * Indicates if non-exported definition of this kind is local
+         */
+        final boolean local;
+
+        Kind(String srclibKind, boolean local) {
+            this.srclibKind = srclibKind;
+            this.local = local;
+        }
+
+        /**
+         * @param javaKind Java element kind (see {@link ElementKind})
+         * @return classification of given kind, unknown kinds are treated as variables
+         */
+        static Kind of(String javaKind) {
+            Kind kind = KINDS.get(javaKind);
+            return kind == null ? VAR : kind;
+        }
+    }
+
+    /**
+     * JSON serialization rules for definition objects. Definitions are written directly to JSON stream, relative
+     * paths of source files are computed once per file
+     */
+    static class JSONSerializer extends TypeAdapter<Def> {
+
+        private final Map<String, String> files = new HashMap<>();
 
         @Override
-        public JsonElement serialize(Def sym, Type arg1, JsonSerializationContext arg2) {
-            JsonObject object = new JsonObject();
+        public void write(JsonWriter out, Def sym) throws IOException {
+            if (sym == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
 
             if (sym.file != null) {
-                object.add("File", new JsonPrimitive(PathUtil.relativizeCwd(sym.file)));
+                out.name("File").value(files.computeIfAbsent(sym.file, PathUtil::relativizeCwd));
             }
 
-            object.add("Name", new JsonPrimitive(sym.name));
+            out.name("Name").value(sym.name);
 
-            object.add("DefStart", new JsonPrimitive(sym.defStart));
-            object.add("DefEnd", new JsonPrimitive(sym.defEnd));
+            out.name("DefStart").value(sym.defStart);
+            out.name("DefEnd").value(sym.defEnd);
 
-            boolean exported;
-            if (sym.modifiers != null) {
-                exported = sym.modifiers.contains("public");
-                object.add("Exported", new JsonPrimitive(exported));
-            } else {
-                exported = false;
-                object.add("Exported", new JsonPrimitive(false));
-            }
+            boolean exported = sym.modifiers != null && sym.modifiers.contains("public");
+            out.name("Exported").value(exported);
 
-            object.add("Local", new JsonPrimitive(!exported &&
-                    !(sym.kind.equals("PACKAGE") ||
-                            sym.kind.equals("ENUM") ||
-                            sym.kind.equals("CLASS") ||
-                            sym.kind.equals("ANNOTATION_TYPE") ||
-                            sym.kind.equals("INTERFACE") ||
-                            sym.kind.equals("ENUM_CONSTANT") ||
-                            sym.kind.equals("FIELD") ||
-                            sym.kind.equals("METHOD") ||
-                            sym.kind.equals("CONSTRUCTOR"))));
-
-            switch (sym.kind) {
-                case "ENUM":
-                case "CLASS":
-                case "INTERFACE":
-                case "ANNOTATION_TYPE":
-                    object.add("Kind", new JsonPrimitive("type"));
-                    break;
-                case "METHOD":
-                case "CONSTRUCTOR":
-                    object.add("Kind", new JsonPrimitive("func"));
-                    break;
-                case "PACKAGE":
-                    object.add("Kind", new JsonPrimitive("package"));
-                    break;
-                default:
-                    object.add("Kind", new JsonPrimitive("var"));
-                    break;
-            }
+            Kind kind = Kind.of(sym.kind);
+            out.name("Local").value(!exported && kind.local);
+            out.name("Kind").value(kind.srclibKind);
 
-            object.add("Path", new JsonPrimitive(sym.defKey.formatPath()));
-            object.add("TreePath", new JsonPrimitive(sym.defKey.formatTreePath()));
+            out.name("Path").value(sym.defKey.formatPath());
+            out.name("TreePath").value(sym.defKey.formatTreePath());
 
             // Populate extra data field
-            JsonObject data = new JsonObject();
-            data.addProperty("JavaKind", sym.kind);
-            data.addProperty("TypeExpression", sym.typeExpr);
-            data.addProperty("Package", sym.pkg);
+            out.name("Data").beginObject();
+            out.name("JavaKind").value(sym.kind);
+            out.name("TypeExpression").value(sym.typeExpr);
+            out.name("Package").value(sym.pkg);
 
             if (sym.modifiers != null) {
-                JsonArray modifiers = new JsonArray();
-                for (String modifier : sym.modifiers) modifiers.add(new JsonPrimitive(modifier));
-                data.add("Modifiers", modifiers);
+                out.name("Modifiers").beginArray();
+                for (String modifier : sym.modifiers) {
+                    out.value(modifier);
+                }
+                out.endArray();
             }
+            out.endObject();
 
-            object.add("Data", data);
+            out.endObject();
+        }
 
-            return object;
+        /**
+         * Definitions are only written, value is skipped
+         */
+        @Override
+        public Def read(JsonReader in) throws IOException {
+            in.skipValue();
+            return null;
         }
 
     }
@@ -11,6 +11,10 @@ public class DefKey {
     private final URI origin;
     private final String path;
 
+    /**
+     * Formatted path, computed on demand
+     */
+    private String formattedPath;
 
     public DefKey(URI origin, String path) {
         this.origin = origin;
@@ -18,7 +22,12 @@ public class DefKey {
     }
 
     public String formatPath() {
-        return getPath().replace('.', '/').replace('$', '.');
+        String ret = formattedPath;
+        if (ret == null) {
+            ret = getPath().replace('.', '/').replace('$', '.');
+            formattedPath = ret;
+        }
+        return ret;
     }
 
     public String formatTreePath() {
@@ -0,0 +1,210 @@
+package com.sourcegraph.javagraph;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * File-level dependency index of a source unit: definitions each file refers to and files definitions are located in.
+ * Built from references emitted by graph, only references to definitions located in other unit's files are kept.
+ * When files change, files referring to definitions located in changed ones may resolve their references differently
+ * while their own text stays the same, so they are the only ones that have to be graphed again
+ */
+public class DependencyIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DependencyIndex.class);
+
+    /**
+     * Definition path => file definition is located in
+     */
+    private final Map<String, String> defs = new HashMap<>();
+
+    /**
+     * File => paths of definitions located in other files it refers to
+     */
+    private final Map<String, Set<String>> refs = new HashMap<>();
+
+    /**
+     * Replaces index entries of files present in a given graph with the ones built from graph's definitions and
+     * references
+     *
+     * @param graph graph of some or all unit's files
+     */
+    public void update(GraphCommand.Graph graph) {
+        Set<String> files = new HashSet<>();
+        for (Def def : graph.Defs) {
+            if (def.file != null) {
+                files.add(PathUtil.relativizeCwd(def.file));
+            }
+        }
+        for (Ref ref : graph.Refs) {
+            files.add(PathUtil.relativizeCwd(ref.file));
+        }
+        defs.values().removeAll(files);
+        refs.keySet().removeAll(files);
+
+        for (Def def : graph.Defs) {
+            if (def.file != null) {
+                defs.put(def.defKey.formatPath(), PathUtil.relativizeCwd(def.file));
+            }
+        }
+        for (Ref ref : graph.Refs) {
+            String path = ref.defKey.formatPath();
+            // files read from source path in subset mode are not graphed, their definitions are known from origins.
+            // Definitions may also come from class files compiled from unit's sources (f.e. stubs of upstream units)
+            String defFile = getSourceFile(ref.defKey.getOrigin());
+            if (defFile != null) {
+                defs.putIfAbsent(path, defFile);
+            } else {
+                defFile = defs.get(path);
+            }
+            String file = PathUtil.relativizeCwd(ref.file);
+            if (defFile != null && !defFile.equals(file)) {
+                refs.computeIfAbsent(file, k -> new HashSet<>()).add(path);
+            }
+        }
+    }
+
+    /**
+     * Removes index entries of given files, f.e. deleted ones
+     *
+     * @param files files to remove, relative to current working directory
+     */
+    public void remove(Collection<String> files) {
+        Set<String> removed = new HashSet<>();
+        for (String file : files) {
+            removed.add(PathUtil.relativizeCwd(file));
+        }
+        defs.values().removeAll(removed);
+        refs.keySet().removeAll(removed);
+    }
+
+    /**
+     * @param changedFiles changed files, relative to current working directory
+     * @return given files and files referring to definitions located in them according to index
+     */
+    public Set<String> getDependents(Collection<String> changedFiles) {
+        Set<String> changed = new HashSet<>();
+        for (String file : changedFiles) {
+            changed.add(PathUtil.relativizeCwd(file));
+        }
+        Set<String> changedDefs = new HashSet<>();
+        for (Map.Entry<String, String> entry : defs.entrySet()) {
+            if (changed.contains(entry.getValue())) {
+                changedDefs.add(entry.getKey());
+            }
+        }
+        Set<String> ret = new TreeSet<>(changed);
+        for (Map.Entry<String, Set<String>> entry : refs.entrySet()) {
+            if (!Collections.disjoint(entry.getValue(), changedDefs)) {
+                ret.add(entry.getKey());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads index from a given file
+     *
+     * @param file file to read index from
+     * @return index read
+     * @throws IOException
+     */
+    public static DependencyIndex read(File file) throws IOException {
+        Data data;
+        try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            data = new Gson().fromJson(r, Data.class);
+        }
+        DependencyIndex index = new DependencyIndex();
+        for (int i = 0; i < data.Defs.size(); i++) {
+            index.defs.put(data.Defs.get(i), data.Files.get(data.DefFiles[i]));
+        }
+        for (int i = 0; i < data.Refs.size(); i++) {
+            Set<String> paths = new HashSet<>();
+            for (int def : data.Refs.get(i)) {
+                paths.add(data.Defs.get(def));
+            }
+            if (!paths.isEmpty()) {
+                index.refs.put(data.Files.get(i), paths);
+            }
+        }
+        LOGGER.debug("Read dependency index of {} files and {} definitions", index.refs.size(), index.defs.size());
+        return index;
+    }
+
+    /**
+     * Writes index to a given file
+     *
+     * @param file file to write index to
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        // files and definitions are written once and referred to by their positions
+        Map<String, Integer> fileIds = new LinkedHashMap<>();
+        Map<String, Integer> defIds = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : defs.entrySet()) {
+            fileIds.putIfAbsent(entry.getValue(), fileIds.size());
+            defIds.put(entry.getKey(), defIds.size());
+        }
+        for (String referrer : refs.keySet()) {
+            fileIds.putIfAbsent(referrer, fileIds.size());
+        }
+        Data data = new Data();
+        data.Files = new ArrayList<>(fileIds.keySet());
+        data.Defs = new ArrayList<>(defIds.keySet());
+        data.DefFiles = new int[defIds.size()];
+        for (Map.Entry<String, String> entry : defs.entrySet()) {
+            data.DefFiles[defIds.get(entry.getKey())] = fileIds.get(entry.getValue());
+        }
+        data.Refs = new ArrayList<>();
+        for (String referrer : data.Files) {
+            Set<String> paths = refs.getOrDefault(referrer, Collections.emptySet());
+            // definitions of removed files are not written
+            data.Refs.add(paths.stream().filter(defIds::containsKey).mapToInt(defIds::get).sorted().toArray());
+        }
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new Gson().toJson(data, w);
+        }
+        LOGGER.info("Wrote dependency index of {} files and {} definitions to {}",
+                data.Files.size(), data.Defs.size(), file);
+    }
+
+    /**
+     * @param origin definition's origin
+     * @return source file (relative to current working directory) if definition comes from Java source file
+     */
+    private static String getSourceFile(URI origin) {
+        if (origin == null || !"file".equals(origin.getScheme()) || !origin.getPath().endsWith(".java")) {
+            return null;
+        }
+        return PathUtil.relativizeCwd(Paths.get(origin));
+    }
+
+    /**
+     * Persisted form of index
+     */
+    private static class Data {
+        /**
+         * Files
+         */
+        List<String> Files;
+        /**
+         * Definition paths
+         */
+        List<String> Defs;
+        /**
+         * Positions of definitions' files in file list
+         */
+        int[] DefFiles;
+        /**
+         * For each file, positions of definitions it refers to in definition list
+         */
+        List<int[]> Refs;
+    }
+}
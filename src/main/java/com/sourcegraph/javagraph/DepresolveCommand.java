@@ -3,6 +3,7 @@ package com.sourcegraph.javagraph;
 import io.fossa.config.FossaConfig;
 
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
 import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -24,6 +25,12 @@ public class DepresolveCommand {
     @Parameter(names = {"--debug-unit-file"}, description = "The path to a source unit input file, which will be read as though it came from stdin. Used to mimic stdin when you can't actually pipe to stdin (e.g., in IntelliJ run configurations).")
     String debugUnitFile;
 
+    @ParametersDelegate
+    JSONUtil.Options output = new JSONUtil.Options();
+
+    @ParametersDelegate
+    Metrics.Options metrics = new Metrics.Options();
+
     /**
      * Main method
      */
@@ -78,7 +85,8 @@ public class DepresolveCommand {
             }
         }
 
-        JSONUtil.writeJSON(resolutions);
+        JSONUtil.writeJSON(resolutions, output);
+        Metrics.report("depresolve", metrics);
     }
 
 }
@@ -0,0 +1,338 @@
+package com.sourcegraph.javagraph;
+
+import com.beust.jcommander.Parameter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates synthetic Java projects for scale testing of scan and graph. Output depends only on parameters, the same
+ * parameters (including seed) always produce the same files.
+ * <p>
+ * Each file holds a single generic top-level class that refers to randomly chosen classes generated before it
+ * (in the same or in preceding modules) through types, method calls, and constant fields. Module N depends on
+ * module N-1.
+ * <p>
+ * This command is not a part of srclib toolchain protocol and is not listed in usage
+ */
+public class GenerateCommand {
+
+    public static final String NAME = "generate-synthetic";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenerateCommand.class);
+
+    private static final String GROUP_ID = "com.sourcegraph.synthetic";
+
+    private static final String ROOT_PACKAGE = "synthetic";
+
+    /**
+     * Maximum number of classes in a single package
+     */
+    private static final int FILES_PER_PACKAGE = 20;
+
+    /**
+     * Maximum number of sub-packages of a single package
+     */
+    private static final int PACKAGE_FANOUT = 10;
+
+    @Parameter(names = {"--output"}, description = "Directory to generate project in", required = true)
+    String output;
+
+    @Parameter(names = {"--files"}, description = "Number of java files")
+    int files = 1000;
+
+    @Parameter(names = {"--modules"}, description = "Number of modules")
+    int modules = 1;
+
+    @Parameter(names = {"--layout"}, description = "Build layout, maven or gradle")
+    String layout = "maven";
+
+    @Parameter(names = {"--package-depth"}, description = "Depth of package hierarchy inside of module package")
+    int packageDepth = 3;
+
+    @Parameter(names = {"--refs"}, description = "Number of references to other classes per file")
+    int refs = 10;
+
+    @Parameter(names = {"--generic-depth"}, description = "Nesting depth of generic types")
+    int genericDepth = 2;
+
+    @Parameter(names = {"--inner-class-density"}, description = "Average number of inner and anonymous classes per file")
+    double innerClassDensity = 0.5;
+
+    @Parameter(names = {"--seed"}, description = "Random seed")
+    long seed;
+
+    /**
+     * Main method
+     */
+    public void Execute() {
+        try {
+            generate(Paths.get(output));
+        } catch (Exception e) {
+            LOGGER.error("Unable to generate synthetic project", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generates project
+     *
+     * @param dir target directory, it's created if needed
+     * @throws IOException
+     */
+    void generate(Path dir) throws IOException {
+        if (files < 1 || modules < 1 || modules > files) {
+            throw new IllegalArgumentException("There should be at least one file per module");
+        }
+        boolean gradle;
+        switch (layout) {
+            case "maven":
+                gradle = false;
+                break;
+            case "gradle":
+                gradle = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown layout " + layout);
+        }
+
+        LOGGER.info("Generating {} files in {} modules in {}", files, modules, dir.toAbsolutePath());
+        FileUtils.forceMkdir(dir.toFile());
+        if (gradle) {
+            writeGradleRoot(dir);
+        } else {
+            writeMavenRoot(dir);
+        }
+
+        Random random = new Random(seed);
+        int first = 0;
+        for (int module = 0; module < modules; module++) {
+            Path moduleDir = dir.resolve(getModuleName(module));
+            if (gradle) {
+                writeGradleModule(moduleDir, module);
+            } else {
+                writeMavenModule(moduleDir, module);
+            }
+            int last = (int) ((long) files * (module + 1) / modules);
+            for (int index = first; index < last; index++) {
+                writeClass(moduleDir.resolve("src/main/java"), module, index, first, random);
+            }
+            LOGGER.debug("Generated module {}", getModuleName(module));
+            first = last;
+        }
+        LOGGER.info("Generated synthetic project in {}", dir.toAbsolutePath());
+    }
+
+    /**
+     * Writes single class
+     *
+     * @param sourceDir   module's source directory
+     * @param module      module number
+     * @param index       global class number
+     * @param moduleFirst number of the first class in the current module
+     * @param random      random numbers generator
+     * @throws IOException
+     */
+    private void writeClass(Path sourceDir, int module, int index, int moduleFirst, Random random)
+            throws IOException {
+        String pkg = getPackage(module, index - moduleFirst);
+        String name = getClassName(index);
+        String nested = nestedType("T", genericDepth);
+
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(pkg).append(";\n\n");
+        code.append("/**\n * Synthetic class ").append(index).append("\n */\n");
+        code.append("public class ").append(name).append("<T> {\n\n");
+        code.append("    public static final int CONSTANT = ").append(index).append(";\n\n");
+        code.append("    private final ").append(nested).append(" nested;\n\n");
+        code.append("    public ").append(name).append('(').append(nested).append(" nested) {\n");
+        code.append("        this.nested = nested;\n");
+        code.append("    }\n\n");
+        code.append("    public int value(int x) {\n");
+        code.append("        return x + CONSTANT;\n");
+        code.append("    }\n\n");
+        code.append("    public ").append(nested).append(" nested() {\n");
+        code.append("        return nested;\n");
+        code.append("    }\n");
+
+        // references to classes generated before, they are located in the same or in one of preceding modules
+        for (int i = 0; index > 0 && i < refs; i++) {
+            int target = random.nextInt(index);
+            String targetClass = getQualifiedClassName(target);
+            code.append("\n    public int ref").append(i).append('(').
+                    append(targetClass).append('<').append(nestedType("String", genericDepth)).append("> other) {\n");
+            code.append("        ").append(nestedType("String", genericDepth * 2)).append(" n = other.nested();\n");
+            code.append("        return other.value(CONSTANT) + ").append(targetClass).append(".CONSTANT;\n");
+            code.append("    }\n");
+        }
+
+        int innerClasses = (int) innerClassDensity;
+        if (random.nextDouble() < innerClassDensity - innerClasses) {
+            innerClasses++;
+        }
+        for (int i = 0; i < innerClasses; i++) {
+            if (i % 2 == 0) {
+                code.append("\n    static class Inner").append(i).append("<E extends Comparable<E>> {\n");
+                code.append("        int compare(E a, E b) {\n");
+                code.append("            return a.compareTo(b) + CONSTANT;\n");
+                code.append("        }\n");
+                code.append("    }\n");
+            } else {
+                code.append("\n    private final Runnable anonymous").append(i).append(" = new Runnable() {\n");
+                code.append("        @Override\n");
+                code.append("        public void run() {\n");
+                code.append("            value(").append(i).append(");\n");
+                code.append("        }\n");
+                code.append("    };\n");
+            }
+        }
+        code.append("}\n");
+
+        Path file = sourceDir.resolve(pkg.replace('.', '/')).resolve(name + ".java");
+        write(file, code.toString());
+    }
+
+    private void writeMavenRoot(Path dir) throws IOException {
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        pom.append("    <modelVersion>4.0.0</modelVersion>\n");
+        pom.append("    <groupId>").append(GROUP_ID).append("</groupId>\n");
+        pom.append("    <artifactId>synthetic</artifactId>\n");
+        pom.append("    <version>1.0</version>\n");
+        pom.append("    <packaging>pom</packaging>\n");
+        pom.append("    <modules>\n");
+        for (int module = 0; module < modules; module++) {
+            pom.append("        <module>").append(getModuleName(module)).append("</module>\n");
+        }
+        pom.append("    </modules>\n");
+        pom.append("</project>\n");
+        write(dir.resolve("pom.xml"), pom.toString());
+    }
+
+    private void writeMavenModule(Path dir, int module) throws IOException {
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        pom.append("    <modelVersion>4.0.0</modelVersion>\n");
+        pom.append("    <parent>\n");
+        pom.append("        <groupId>").append(GROUP_ID).append("</groupId>\n");
+        pom.append("        <artifactId>synthetic</artifactId>\n");
+        pom.append("        <version>1.0</version>\n");
+        pom.append("    </parent>\n");
+        pom.append("    <artifactId>").append(getModuleName(module)).append("</artifactId>\n");
+        if (module > 0) {
+            pom.append("    <dependencies>\n");
+            pom.append("        <dependency>\n");
+            pom.append("            <groupId>").append(GROUP_ID).append("</groupId>\n");
+            pom.append("            <artifactId>").append(getModuleName(module - 1)).append("</artifactId>\n");
+            pom.append("            <version>1.0</version>\n");
+            pom.append("        </dependency>\n");
+            pom.append("    </dependencies>\n");
+        }
+        pom.append("</project>\n");
+        write(dir.resolve("pom.xml"), pom.toString());
+    }
+
+    private void writeGradleRoot(Path dir) throws IOException {
+        StringBuilder settings = new StringBuilder();
+        settings.append("rootProject.name = 'synthetic'\n");
+        for (int module = 0; module < modules; module++) {
+            settings.append("include '").append(getModuleName(module)).append("'\n");
+        }
+        write(dir.resolve("settings.gradle"), settings.toString());
+        write(dir.resolve("build.gradle"), "subprojects {\n" +
+                "    apply plugin: 'java'\n" +
+                "    group = '" + GROUP_ID + "'\n" +
+                "    version = '1.0'\n" +
+                "}\n");
+    }
+
+    private void writeGradleModule(Path dir, int module) throws IOException {
+        StringBuilder build = new StringBuilder();
+        if (module > 0) {
+            build.append("dependencies {\n");
+            build.append("    compile project(':").append(getModuleName(module - 1)).append("')\n");
+            build.append("}\n");
+        }
+        write(dir.resolve("build.gradle"), build.toString());
+    }
+
+    /**
+     * @param module      module number
+     * @param localIndex  class number inside of module
+     * @return package name of a given class, f.e. synthetic.m0.p0.p3.p1
+     */
+    private String getPackage(int module, int localIndex) {
+        StringBuilder ret = new StringBuilder(ROOT_PACKAGE).append(".m").append(module);
+        int packageIndex = localIndex / FILES_PER_PACKAGE;
+        int divisor = 1;
+        for (int level = 1; level < packageDepth; level++) {
+            divisor *= PACKAGE_FANOUT;
+        }
+        for (int level = 0; level < packageDepth; level++) {
+            ret.append(".p").append((packageIndex / divisor) % PACKAGE_FANOUT);
+            divisor = Math.max(1, divisor / PACKAGE_FANOUT);
+        }
+        return ret.toString();
+    }
+
+    /**
+     * @param index global class number
+     * @return fully qualified name of a given class
+     */
+    private String getQualifiedClassName(int index) {
+        int module = getModule(index);
+        int moduleFirst = (int) ((long) files * module / modules);
+        return getPackage(module, index - moduleFirst) + '.' + getClassName(index);
+    }
+
+    /**
+     * @param index global class number
+     * @return number of module class belongs to
+     */
+    private int getModule(int index) {
+        int module = (int) ((long) index * modules / files);
+        // adjusting rounding errors of integer division
+        while (module > 0 && (long) files * module / modules > index) {
+            module--;
+        }
+        while (module < modules - 1 && (long) files * (module + 1) / modules <= index) {
+            module++;
+        }
+        return module;
+    }
+
+    private static String getClassName(int index) {
+        return "C" + index;
+    }
+
+    private static String getModuleName(int module) {
+        return "module-" + module;
+    }
+
+    /**
+     * @param type  innermost type
+     * @param depth number of java.util.List wrappers
+     * @return nested generic type, f.e. java.util.List&lt;java.util.List&lt;T&gt;&gt;
+     */
+    private static String nestedType(String type, int depth) {
+        return StringUtils.repeat("java.util.List<", depth) + type + StringUtils.repeat('>', depth);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        File parent = file.getParent().toFile();
+        FileUtils.forceMkdir(parent);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class GradleParser {
 	private static final Logger LOGGER = LoggerFactory.getLogger(GradleParser.class);
 	
 	private SourceUnit unit;
+	private SourceUnit testUnit;
 	private String gradleFile;
 	private String directory;
 	private ArrayList<String> rawDepList = new ArrayList<>();
@@ -118,17 +119,30 @@ public class GradleParser {
     		String[] dependencyParts = dependencyId.split(":");
     		if (dependencyParts.length == 3) {
 	    		RawDependency newDependency = new RawDependency(dependencyParts[0], dependencyParts[1], dependencyParts[2], config, this.gradleFile, PathUtil.CWD.relativize(Paths.get(this.gradleFile)).toString());
-	    		unit.Dependencies.add(newDependency);
+	    		if (isTestConfiguration(config)) {
+	    			testUnit.Dependencies.add(newDependency);
+	    		} else {
+	    			unit.Dependencies.add(newDependency);
+	    		}
     		} else {
     			LOGGER.warn("Tried to parse invalid dependency {} from config {}", dependencyId, config);
     		}
     }
     
+    /*
+     * Test configurations are testCompile, testImplementation, androidTestCompile, debugTestImplementation etc.
+     * */
+    private static boolean isTestConfiguration(String config) {
+    		return config != null && (config.startsWith("test") || config.contains("Test"));
+    }
+    
     public GradleParser(Path build) throws IOException {
     		this.gradleFile = build.toString();
     		this.directory = build.getParent().toString();
     		unit = new SourceUnit();
     		unit.Dependencies = new ArrayList<>();
+    		testUnit = new SourceUnit();
+    		testUnit.Dependencies = new ArrayList<>();
     	
     		byte[] encoded = Files.readAllBytes(build);
 		org.codehaus.groovy.control.SourceUnit gradleUnit = org.codehaus.groovy.control.SourceUnit.create("gradle", new String(encoded, StandardCharsets.UTF_8));
@@ -143,6 +157,11 @@ public class GradleParser {
         unit.Type = SourceUnit.DEFAULT_TYPE;
         unit.Name = build.getParent().getFileName().toString();
         unit.Dir = this.directory;
+
+        testUnit.Type = unit.Type;
+        testUnit.Name = unit.Name + SourceUnit.TEST_SUFFIX;
+        testUnit.Dir = unit.Dir;
+        testUnit.Data.put(SourceUnit.MAIN_UNIT, unit.Name);
         
 //        if (info.buildFile != null) {
 //            unit.Data.put("GradleFile", PathUtil.normalize(
@@ -179,5 +198,12 @@ public class GradleParser {
     public SourceUnit getUnit() {
     		return this.unit;
     }
+    
+    /*
+     * Returns unit made of test configurations, or null if build file declares no test dependencies
+     * */
+    public SourceUnit getTestUnit() {
+    		return this.testUnit.Dependencies.isEmpty() ? null : this.testUnit;
+    }
 	
 }
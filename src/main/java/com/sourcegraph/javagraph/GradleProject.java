@@ -172,6 +172,7 @@ public class GradleProject implements Project {
          * */
         
         Set<SourceUnit> units = new LinkedHashSet<>();
+        Set<SourceUnit> testUnits = new LinkedHashSet<>();
         Set<Path> visited = new HashSet<>();
         for (Path gradleFile : gradleFiles) {
 
@@ -186,12 +187,19 @@ public class GradleProject implements Project {
             try {
             		GradleParser parser = new GradleParser(gradleFile);
                 units.add(parser.getUnit());
+                SourceUnit testUnit = parser.getTestUnit();
+                if (testUnit != null) {
+                    testUnits.add(testUnit);
+                }
             } catch (Exception e) {
                 LOGGER.warn("An error occurred while processing Gradle file {}",
                         gradleFile, e);
             }
         }
 
+        // main units go first, so that they may be graphed before test units that depend on them
+        units.addAll(testUnits);
+
         LOGGER.debug("Resolving source unit dependencies");
 
         try {
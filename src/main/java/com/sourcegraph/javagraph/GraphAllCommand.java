@@ -0,0 +1,310 @@
+package com.sourcegraph.javagraph;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Graphs all source units produced by scan command in a single JVM. Units are scheduled largest-first on a bounded
+ * pool of workers, each unit reserves a part of heap proportional to the size of its sources before it starts, so that
+ * several large units are not attributed at the same time. Graph of each unit is written to a separate file.
+ * <p>
+ * Optionally units are graphed in order of their in-repo dependencies (units which source directories are in the
+ * source path of a given one), upstream units are compiled to class files which are used by downstream units
+ * instead of parsing and attributing upstream sources again
+ */
+public class GraphAllCommand {
+
+    public static final String NAME = "graph-all";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphAllCommand.class);
+
+    /**
+     * Share of maximum heap size available for units being graphed
+     */
+    private static final double HEAP_SHARE = 0.75;
+
+    /**
+     * Directory inside of output one to keep class files of upstream units in
+     */
+    private static final String STUBS_DIR = ".stubs";
+
+    @Parameter(names = {"--units-file"}, description = "The path to scan output (JSON array of source units), standard input is used if not set")
+    String unitsFile;
+
+    @Parameter(names = {"--output-dir"}, description = "Directory to write graph of each unit to", required = true)
+    String outputDir;
+
+    @Parameter(names = {"--threads"}, description = "Maximum number of units to graph concurrently")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = {"--heap-per-source-byte"}, description = "Estimated number of heap bytes needed to graph a byte of source code")
+    int heapPerSourceByte = 200;
+
+    @Parameter(names = {"--reuse-upstream"}, description = "Graph units in order of their in-repo dependencies, compiling upstream units into class files that replace their sources in source path of downstream units")
+    boolean reuseUpstream;
+
+    @ParametersDelegate
+    Grapher.Options grapher = new Grapher.Options();
+
+    @ParametersDelegate
+    JSONUtil.Options output = new JSONUtil.Options();
+
+    @ParametersDelegate
+    Metrics.Options metrics = new Metrics.Options();
+
+    /**
+     * Main method
+     */
+    public void Execute() {
+
+        List<SourceUnit> units = null;
+        try {
+            Reader r;
+            if (!StringUtils.isEmpty(unitsFile)) {
+                LOGGER.debug("Reading source units JSON data from {}", unitsFile);
+                r = Files.newBufferedReader(FileSystems.getDefault().getPath(unitsFile));
+            } else {
+                r = new InputStreamReader(System.in);
+            }
+            units = new Gson().fromJson(r, new TypeToken<List<SourceUnit>>() {
+            }.getType());
+            r.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to read source units data", e);
+            System.exit(1);
+        }
+
+        int failed = 0;
+        try {
+            FileUtils.forceMkdir(new File(outputDir));
+            failed = graphAll(units);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error occurred while building graphs", e);
+            System.exit(1);
+        }
+        Metrics.report(NAME, metrics);
+        if (failed > 0) {
+            LOGGER.error("Failed to build graphs of {} out of {} units", failed, units.size());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Graphs given units, failure of a unit doesn't stop others
+     *
+     * @param units source units to graph
+     * @return number of failed units
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    int graphAll(List<SourceUnit> units) throws InterruptedException, IOException {
+
+        // heap budget is tracked in kilobytes to fit into semaphore's permits
+        int budget = (int) Math.min(Integer.MAX_VALUE, (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE) >> 10);
+        Semaphore heap = new Semaphore(budget);
+
+        Map<SourceUnit, Long> sizes = new IdentityHashMap<>();
+        Map<SourceUnit, Set<String>> upstreams = new IdentityHashMap<>();
+        Set<String> names = units.stream().map(unit -> unit.Name).collect(Collectors.toSet());
+        Set<String> upstreamNames = new HashSet<>();
+        for (SourceUnit unit : units) {
+            sizes.put(unit, getSourceSize(unit));
+            Set<String> upstream = reuseUpstream ? getUpstreamUnits(unit, names) : Collections.emptySet();
+            upstreams.put(unit, upstream);
+            upstreamNames.addAll(upstream);
+        }
+        List<SourceUnit> pending = new ArrayList<>(units);
+        pending.sort(Comparator.comparing(sizes::get).reversed());
+
+        File stubsDir = new File(outputDir, STUBS_DIR);
+        FileUtils.deleteQuietly(stubsDir);
+
+        LOGGER.info("Graphing {} units using {} threads", units.size(), threads);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        BlockingQueue<SourceUnit> finished = new LinkedBlockingQueue<>();
+        Set<String> done = new HashSet<>();
+        Map<String, File> stubs = new ConcurrentHashMap<>();
+        AtomicInteger failed = new AtomicInteger();
+        int running = 0;
+        try {
+            while (!pending.isEmpty()) {
+                for (SourceUnit unit = finished.poll(); unit != null; unit = finished.poll()) {
+                    done.add(unit.Name);
+                    running--;
+                }
+                // the largest unit which upstream units are done
+                SourceUnit next = pending.stream().
+                        filter(unit -> done.containsAll(upstreams.get(unit))).
+                        findFirst().
+                        orElse(null);
+                if (next == null) {
+                    if (running > 0) {
+                        done.add(finished.take().Name);
+                        running--;
+                        continue;
+                    }
+                    // dependency cycle, the largest unit will use sources of its upstream units
+                    next = pending.get(0);
+                }
+                pending.remove(next);
+
+                SourceUnit unit = next;
+                File classOutput = upstreamNames.contains(unit.Name) ?
+                        new File(stubsDir, getOutputFileName(unit, StringUtils.EMPTY)) :
+                        null;
+                // units exceeding the whole budget are graphed alone
+                int permits = (int) Math.max(1, Math.min(budget, (sizes.get(unit) * heapPerSourceByte) >> 10));
+                heap.acquire(permits);
+                running++;
+                executorService.submit(() -> {
+                    try {
+                        useStubs(unit, stubs);
+                        graph(unit, classOutput);
+                        if (classOutput != null && classOutput.isDirectory()) {
+                            stubs.put(unit.Name, classOutput);
+                        }
+                    } catch (Throwable e) {
+                        LOGGER.error("Unable to build graph for {}", unit.Name, e);
+                        failed.incrementAndGet();
+                    } finally {
+                        heap.release(permits);
+                        finished.add(unit);
+                    }
+                });
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executorService.shutdownNow();
+            FileUtils.deleteQuietly(stubsDir);
+        }
+        return failed.get();
+    }
+
+    /**
+     * Graphs single unit and writes result into output directory
+     *
+     * @param unit        source unit to graph
+     * @param classOutput if not null, unit's sources are compiled into class files in a given directory
+     * @throws Exception
+     */
+    void graph(SourceUnit unit, File classOutput) throws Exception {
+        LOGGER.info("Building graph for {}", unit.Name);
+        GraphCommand.Graph graph = GraphCommand.graph(unit, classOutput, grapher);
+        String suffix = ".graph.json" + (output.gzip ? ".gz" : StringUtils.EMPTY);
+        File file = new File(outputDir, getOutputFileName(unit, suffix));
+        JSONUtil.writeJSON(graph, output, new FileOutputStream(file));
+        LOGGER.info("Built graph for {}: {} defs, {} refs", unit.Name, graph.Defs.size(), graph.Refs.size());
+    }
+
+    /**
+     * @param unit  source unit
+     * @param names names of all units
+     * @return names of units (other than given one) which source directories are in unit's source path
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<String> getUpstreamUnits(SourceUnit unit, Set<String> names) {
+        List<List<String>> sourcePath = (List<List<String>>) unit.Data.get("SourcePath");
+        if (sourcePath == null) {
+            return Collections.emptySet();
+        }
+        return sourcePath.stream().
+                map(sourceDir -> sourceDir.get(0)).
+                filter(name -> !name.equals(unit.Name) && names.contains(name)).
+                collect(Collectors.toSet());
+    }
+
+    /**
+     * Replaces source directories of upstream units with their class files (if available) in unit's data:
+     * directories are removed from source path, class files are prepended to class path and recorded in stub path,
+     * so that references to them resolve to the same units
+     *
+     * @param unit  source unit to update
+     * @param stubs class file directories of upstream units (unit name =&gt; directory)
+     */
+    @SuppressWarnings("unchecked")
+    private static void useStubs(SourceUnit unit, Map<String, File> stubs) {
+        List<List<String>> sourcePath = (List<List<String>>) unit.Data.get("SourcePath");
+        if (sourcePath == null) {
+            return;
+        }
+        List<List<String>> newSourcePath = new ArrayList<>();
+        List<List<String>> stubPath = new ArrayList<>();
+        List<String> classPath = new ArrayList<>();
+        for (List<String> sourceDir : sourcePath) {
+            File stub = sourceDir.get(0).equals(unit.Name) ? null : stubs.get(sourceDir.get(0));
+            if (stub == null) {
+                newSourcePath.add(sourceDir);
+                continue;
+            }
+            String stubDir = stub.getAbsolutePath();
+            if (!classPath.contains(stubDir)) {
+                classPath.add(stubDir);
+                stubPath.add(Arrays.asList(sourceDir.get(0), sourceDir.get(1), stubDir));
+            }
+        }
+        if (stubPath.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Using class files of {} upstream units for {}", stubPath.size(), unit.Name);
+        Collection<String> oldClassPath = (Collection<String>) unit.Data.get("ClassPath");
+        if (oldClassPath != null) {
+            classPath.addAll(oldClassPath);
+        }
+        unit.Data.put("SourcePath", newSourcePath);
+        unit.Data.put("ClassPath", classPath);
+        unit.Data.put(SourceUnit.STUB_PATH, stubPath);
+    }
+
+    /**
+     * @param unit source unit
+     * @return total size of unit's source files and directories
+     */
+    private long getSourceSize(SourceUnit unit) {
+        long size = 0;
+        for (String path : GraphCommand.getFiles(unit)) {
+            File file = PathUtil.concat(PathUtil.CWD.toFile(), path);
+            if (file.isDirectory()) {
+                size += FileUtils.sizeOfDirectory(file);
+            } else {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param unit   source unit
+     * @param suffix file name suffix
+     * @return name of file to write unit's data to, f.e. com.example_2ffoo#test.JavaArtifact.graph.json. Distinct
+     * units get distinct names: bytes of unit name other than letters, digits, '#', '.' and '-' (including '_') are
+     * written as '_' followed by two hex digits
+     */
+    static String getOutputFileName(SourceUnit unit, String suffix) {
+        StringBuilder ret = new StringBuilder();
+        for (byte b : unit.Name.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if (c < 0x80 && (Character.isLetterOrDigit(c) || c == '#' || c == '.' || c == '-')) {
+                ret.append(c);
+            } else {
+                ret.append('_').append(String.format("%02x", (int) c));
+            }
+        }
+        return ret.append('.').append(unit.Type).append(suffix).toString();
+    }
+}
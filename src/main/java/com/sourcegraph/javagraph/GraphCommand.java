@@ -3,12 +3,14 @@ package com.sourcegraph.javagraph;
 import io.fossa.config.FossaConfig;
 
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
 import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -25,6 +27,24 @@ public class GraphCommand {
     @Parameter(names = {"--debug-unit-file"}, description = "The path to a source unit input file, which will be read as though it came from stdin. Used to mimic stdin when you can't actually pipe to stdin (e.g., in IntelliJ run configurations).")
     String debugUnitFile;
 
+    @Parameter(names = {"--files"}, description = "Graph only given files (comma-separated), other files of the unit are read on demand through source path")
+    List<String> files;
+
+    @Parameter(names = {"--dependency-index"}, description = "File to keep file-level dependency index in. It is rebuilt by full graph and updated by graph of given files")
+    String dependencyIndex;
+
+    @Parameter(names = {"--with-dependents"}, description = "Graph given files and files referring to their definitions according to dependency index")
+    boolean withDependents;
+
+    @ParametersDelegate
+    Grapher.Options grapher = new Grapher.Options();
+
+    @ParametersDelegate
+    JSONUtil.Options output = new JSONUtil.Options();
+
+    @ParametersDelegate
+    Metrics.Options metrics = new Metrics.Options();
+
     /**
      * The Source Unit that is read in from STDIN. Defined here, so that it can be
      * accessed within the anonymous classes below.
@@ -34,12 +54,8 @@ public class GraphCommand {
     /**
      * Main method
      */
-    @SuppressWarnings("unchecked")
     public void Execute() {
 
-        final Graph graph = new Graph(); // Final graphJavaFiles object that is serialized to stdout
-        final GraphData rawGraph = new GraphData(); // Raw graphJavaFiles from the tree traversal
-
         try {
             Reader r;
             if (!StringUtils.isEmpty(debugUnitFile)) {
@@ -56,47 +72,164 @@ public class GraphCommand {
         }
         LOGGER.info("Building graph for {}", unit.Name);
 
+        if (withDependents && (files == null || dependencyIndex == null)) {
+            LOGGER.error("--with-dependents requires --files and --dependency-index");
+            System.exit(1);
+        }
+
+        Graph graph = null;
+        try {
+            Collection<String> subset = files;
+            DependencyIndex index = null;
+            if (dependencyIndex != null) {
+                File indexFile = new File(dependencyIndex);
+                index = files != null && indexFile.isFile() ?
+                        DependencyIndex.read(indexFile) :
+                        new DependencyIndex();
+                if (withDependents) {
+                    subset = getExistingDependents(index, files);
+                }
+            }
+            graph = graph(unit, null, grapher, subset);
+            if (index != null) {
+                index.update(graph);
+                index.write(new File(dependencyIndex));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error occurred while building graph", e);
+            System.exit(1);
+        }
+
+        JSONUtil.writeJSON(graph, output);
+        Metrics.report("graph", metrics);
+    }
+
+    /**
+     * Builds graph of a given source unit
+     *
+     * @param unit source unit to graph
+     * @return graph object to serialize
+     * @throws Exception
+     */
+    static Graph graph(SourceUnit unit) throws Exception {
+        return graph(unit, null, new Grapher.Options());
+    }
+
+    /**
+     * Builds graph of a given source unit
+     *
+     * @param unit        source unit to graph
+     * @param classOutput if not null, unit's sources are compiled into class files in a given directory
+     * @param options     grapher options
+     * @return graph object to serialize
+     * @throws Exception
+     */
+    static Graph graph(SourceUnit unit, File classOutput, Grapher.Options options) throws Exception {
+        return graph(unit, classOutput, options, null);
+    }
+
+    /**
+     * Builds graph of a given source unit or of a subset of its files
+     *
+     * @param unit        source unit to graph
+     * @param classOutput if not null, graphed sources are compiled into class files in a given directory
+     * @param options     grapher options
+     * @param subset      if not null, only given files are graphed while unit's files are added to source path
+     * @return graph object to serialize
+     * @throws Exception
+     */
+    @SuppressWarnings("try")
+    static Graph graph(SourceUnit unit,
+                       File classOutput,
+                       Grapher.Options options,
+                       Collection<String> subset) throws Exception {
+
+        final Graph graph = new Graph(); // Final graphJavaFiles object that is serialized to stdout
+        final GraphData rawGraph = new GraphData(); // Raw graphJavaFiles from the tree traversal
+
         Project proj = unit.getProject();
         Resolver rs = new Resolver(proj, unit, fossaConfig.getMavenArtifactRepositories());
+        Grapher grapher = new Grapher(proj,
+                rawGraph);
+        // file manager is released even if graphing fails, graph-all keeps going with other units
         try {
-            Grapher grapher = new Grapher(proj,
-                    rawGraph);
-            LOGGER.debug("Starting graph collection");
-            Collection<String> files = new ArrayList<>();
-            if (unit.Files != null) {
-                files.addAll(unit.Files);
+            if (classOutput != null && !options.outline) {
+                grapher.setClassOutput(classOutput);
             }
-            files.addAll(collectFilesUsingGlobs(unit.Globs));
-            Collection<String> extraFiles = (Collection<String>) unit.Data.get("ExtraSourceFiles");
-            if (extraFiles != null) {
-                files.addAll(extraFiles);
+            grapher.setPruneClassPath(options.pruneClassPath);
+            grapher.setOutline(options.outline);
+            LOGGER.debug("Starting graph collection");
+            Collection<String> files = getFiles(unit);
+            if (subset != null) {
+                LOGGER.info("Graphing {} out of {} files", subset.size(), files.size());
+                grapher.addSourceRoots(files);
+                files = subset;
             }
             grapher.graphFilesAndDirs(files);
             LOGGER.debug("Graph collection complete");
+        } finally {
             grapher.close();
+        }
 
-            LOGGER.debug("Collecting defs");
-            graph.Defs = rawGraph.defs;
-            for (Def def : rawGraph.defs) {
-                // Ignore empty docstrings.
-                if (def.doc != null) {
-                    graph.Docs.add(new Doc(def));
-                }
+        LOGGER.debug("Collecting defs");
+        graph.Defs = rawGraph.defs;
+        for (Def def : rawGraph.defs) {
+            // Ignore empty docstrings.
+            if (def.doc != null) {
+                graph.Docs.add(new Doc(def));
             }
-            LOGGER.debug("Collecting refs");
+        }
+        LOGGER.debug("Collecting refs");
+        try (Metrics.Timer ignored = Metrics.start("resolve")) {
             for (Ref ref : rawGraph.refs) {
                 ResolvedTarget target = rs.resolveOrigin(ref.defKey.getOrigin());
                 if (target != null) {
                     ref.setDefTarget(target);
                 }
             }
-            graph.Refs = rawGraph.refs;
-        } catch (Exception e) {
-            LOGGER.error("Unexpected error occurred while building graph", e);
-            System.exit(1);
         }
+        graph.Refs = rawGraph.refs;
+        return graph;
+    }
 
-        JSONUtil.writeJSON(graph);
+    /**
+     * Expands changed files with their dependents, deleted files are removed from the index
+     *
+     * @param index        dependency index
+     * @param changedFiles changed files
+     * @return existing changed files and files referring to definitions located in changed files
+     */
+    private static Collection<String> getExistingDependents(DependencyIndex index, Collection<String> changedFiles) {
+        Collection<String> ret = new ArrayList<>();
+        Collection<String> deleted = new ArrayList<>();
+        for (String file : index.getDependents(changedFiles)) {
+            if (PathUtil.concat(PathUtil.CWD.toFile(), file).isFile()) {
+                ret.add(file);
+            } else {
+                deleted.add(file);
+            }
+        }
+        index.remove(deleted);
+        LOGGER.info("{} changed files and their dependents make {} files to graph", changedFiles.size(), ret.size());
+        return ret;
+    }
+
+    /**
+     * @param unit source unit
+     * @return files and directories to graph: unit's files, files matching unit's globs, and extra source files
+     */
+    @SuppressWarnings("unchecked")
+    static Collection<String> getFiles(SourceUnit unit) {
+        Collection<String> files = new ArrayList<>();
+        if (unit.Files != null) {
+            files.addAll(unit.Files);
+        }
+        files.addAll(collectFilesUsingGlobs(unit.Globs));
+        Collection<String> extraFiles = (Collection<String>) unit.Data.get("ExtraSourceFiles");
+        if (extraFiles != null) {
+            files.addAll(extraFiles);
+        }
+        return files;
     }
 
     /**
@@ -104,7 +237,7 @@ public class GraphCommand {
      * @param globs globs
      * @return list of files matching given globs
      */
-    private Collection<String> collectFilesUsingGlobs(List<String> globs) {
+    private static Collection<String> collectFilesUsingGlobs(List<String> globs) {
         if (globs == null || globs.isEmpty()) {
             return Collections.emptyList();
         }
@@ -2,9 +2,16 @@ package com.sourcegraph.javagraph;
 
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
+import com.beust.jcommander.Parameter;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
+import com.sun.tools.javac.api.ClientCodeWrapper;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.util.JCDiagnostic;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
@@ -13,17 +20,26 @@ import org.slf4j.LoggerFactory;
 import javax.tools.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Grapher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Grapher.class);
 
+    /**
+     * Package declaration at the beginning of a line
+     */
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w$.\\s]+?)\\s*;", Pattern.MULTILINE);
+
     private final JavaCompiler compiler;
     private final DiagnosticCollector<JavaFileObject> diags;
     private final StandardJavaFileManager fileManager;
@@ -32,6 +48,47 @@ public class Grapher {
 
     private final Project project;
 
+    /**
+     * Directory to write class files of graphed sources to, if set
+     */
+    private File classOutput;
+
+    /**
+     * Number of compilation errors reported by javac
+     */
+    private int errors;
+
+    /**
+     * Number of errors reported by javac about symbols or packages it can't find, which may be provided by class path
+     * entries dropped by pruning
+     */
+    private int missingSymbolErrors;
+
+    /**
+     * Boot class path entries
+     */
+    private final List<File> bootClassPathFiles;
+
+    /**
+     * Class path entries (existing, without duplicates)
+     */
+    private final List<File> classPathFiles;
+
+    /**
+     * Source path entries
+     */
+    private final List<File> sourcePathFiles;
+
+    /**
+     * If true, class path is restricted to entries providing packages referenced by graphed sources
+     */
+    private boolean pruneClassPath;
+
+    /**
+     * If true, sources are only parsed and outline (types and their members) is emitted, see {@link OutlineScanner}
+     */
+    private boolean outline;
+
     /**
      * Constructs new grapher object
      * @param project project (compiler settings)
@@ -58,7 +115,7 @@ public class Grapher {
             }
             bootClassPath = Arrays.asList(envBootClasspath.split(SystemUtils.PATH_SEPARATOR));
         }
-        Collection<File> bootClassPathFiles  = new ArrayList<>();
+        bootClassPathFiles = new ArrayList<>();
         Collection<String> resolvedBootClassPath = new ArrayList<>();
         for (String path : bootClassPath) {
             Path resolvedPath = PathUtil.CWD.resolve(path).toAbsolutePath();
@@ -73,31 +130,24 @@ public class Grapher {
         if (classPath == null) {
             classPath = Collections.emptyList();
         }
-        Collection<File> classPathFiles = new ArrayList<>();
-        Collection<String> resolvedClassPath = new ArrayList<>();
+        Collection<File> resolvedClassPath = new ArrayList<>();
         for (String path : classPath) {
-            Path resolvedPath = PathUtil.CWD.resolve(path).toAbsolutePath();
-            classPathFiles.add(resolvedPath.toFile());
-            resolvedClassPath.add(resolvedPath.toString());
+            resolvedClassPath.add(PathUtil.CWD.resolve(path).toAbsolutePath().toFile());
         }
+        classPathFiles = ClassPathIndex.clean(resolvedClassPath);
 
-        fileManager.setLocation(StandardLocation.CLASS_PATH, classPathFiles);
         javacOpts.add("-classpath");
-        javacOpts.add(StringUtils.join(resolvedClassPath, SystemUtils.PATH_SEPARATOR));
+        javacOpts.add(StringUtils.EMPTY);
+        setClassPath(classPathFiles);
 
         Collection<String> sourcePath = project.getSourcePath();
-        if (sourcePath != null && !sourcePath.isEmpty()) {
-            javacOpts.add("-sourcepath");
-            Collection<String> resolvedSourcePath = new ArrayList<>();
-            Collection<File> sourcePathFiles = new ArrayList<>();
+        sourcePathFiles = new ArrayList<>();
+        if (sourcePath != null) {
             for (String path : sourcePath) {
-                Path resolvedPath = PathUtil.CWD.resolve(path).toAbsolutePath();
-                resolvedSourcePath.add(resolvedPath.toString());
-                sourcePathFiles.add(resolvedPath.toFile());
+                sourcePathFiles.add(PathUtil.CWD.resolve(path).toAbsolutePath().toFile());
             }
-            javacOpts.add(StringUtils.join(resolvedSourcePath, SystemUtils.PATH_SEPARATOR));
-            fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcePathFiles);
         }
+        setSourcePath(sourcePathFiles);
 
         // Speed up compilation by not doing dataflow, code gen, etc.
         javacOpts.add("-XDcompilePolicy=attr");
@@ -126,12 +176,74 @@ public class Grapher {
 
     }
 
+    /**
+     * Makes grapher compile graphed sources to class files (after they were scanned). If compilation fails, directory
+     * is removed, so that it exists only when it contains class files of all graphed sources
+     * @param classOutput directory to write class files to
+     * @throws IOException if directory cannot be created
+     */
+    public void setClassOutput(File classOutput) throws IOException {
+        // file manager expects output directory to exist
+        FileUtils.forceMkdir(classOutput);
+        this.classOutput = classOutput;
+        // code generation requires flow analysis which is skipped otherwise
+        javacOpts.remove("-XDshouldStopPolicyIfNoError=ATTR");
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(classOutput));
+    }
+
+    /**
+     * Makes grapher restrict class path to entries providing packages referenced by graphed sources. If javac reports
+     * missing symbols with restricted class path, sources are compiled again with the full one
+     * @param pruneClassPath true to restrict class path
+     */
+    public void setPruneClassPath(boolean pruneClassPath) {
+        this.pruneClassPath = pruneClassPath;
+    }
+
+    /**
+     * Makes grapher emit definitions of types and their members using syntax trees only. Sources are not attributed,
+     * so there are no references other than definition ones, and no class files are generated
+     * @param outline true to build outline only
+     */
+    public void setOutline(boolean outline) {
+        this.outline = outline;
+    }
+
+    /**
+     * Adds source directories of given files and directories to source path, so that javac reads them only when graphed
+     * sources refer to them. Source directory of a file is its directory without package ones, directories are
+     * added as is
+     * @param filePaths files and directories
+     * @throws IOException
+     */
+    public void addSourceRoots(Collection<String> filePaths) throws IOException {
+        File root = PathUtil.CWD.toFile();
+        Set<File> roots = new LinkedHashSet<>(sourcePathFiles);
+        // all files of a directory are expected to belong to the same package
+        Set<File> seenDirs = new HashSet<>();
+        for (String filePath : filePaths) {
+            File file = PathUtil.concat(root, filePath).toPath().toAbsolutePath().normalize().toFile();
+            if (file.isDirectory()) {
+                roots.add(file);
+            } else if (file.isFile() && seenDirs.add(file.getParentFile())) {
+                File sourceRoot = getSourceRoot(file);
+                if (sourceRoot != null) {
+                    roots.add(sourceRoot);
+                }
+            }
+        }
+        LOGGER.debug("Added {} source roots to source path", roots.size() - sourcePathFiles.size());
+        sourcePathFiles.clear();
+        sourcePathFiles.addAll(roots);
+        setSourcePath(sourcePathFiles);
+    }
+
     /**
      * Builds a graph of given files and directories.
      * @param filePaths collection of file path elements to graph sources of. If element is a file it will be scheduled
      * for graphing, otherwise, if element is a directory, we'll schedule for graphing all java files located in the
      * given directory recursively. Each element should point to existing file/directory
-     * @throws IOException
+     * @throws IOException if some of elements does not exist or compilation fails
      */
     public void graphFilesAndDirs(Collection<String> filePaths) throws IOException {
 
@@ -142,8 +254,7 @@ public class Grapher {
         for (String filePath : filePaths) {
             File file = PathUtil.concat(root, filePath);
             if (!file.exists()) {
-                LOGGER.error("No such file {}", file.getAbsolutePath());
-                System.exit(1);
+                throw new NoSuchFileException(file.getAbsolutePath());
             }
             if (file.isFile()) {
                 files.add(file.toPath().normalize().toString());
@@ -179,39 +290,117 @@ public class Grapher {
     /**
      * Builds a graph of given file objects
      * @param files list of file objects to build graphs for
-     * @throws IOException
+     * @throws IOException if compilation fails
      */
+    @SuppressWarnings("try")
     public void graphJavaFiles(Iterable<? extends JavaFileObject> files) throws IOException {
+        boolean pruned = false;
+        final List<File> droppedJars = new ArrayList<>();
+        if (pruneClassPath && !outline) {
+            try (Metrics.Timer ignored = Metrics.start("classpath")) {
+                List<File> prunedClassPath = ClassPathIndex.prune(classPathFiles, files);
+                if (prunedClassPath.size() < classPathFiles.size()) {
+                    setClassPath(prunedClassPath);
+                    droppedJars.addAll(classPathFiles);
+                    droppedJars.removeAll(prunedClassPath);
+                    pruned = true;
+                }
+            }
+        }
+        errors = 0;
+        missingSymbolErrors = 0;
+        // with pruned class path diagnostics are reported only if sources are not going to be compiled again
+        final List<Diagnostic<?>> delayed = pruned ? new ArrayList<>() : null;
+
         final JavacTask task = (JavacTask) compiler.getTask(null,
                 fileManager,
                 diagnostic -> {
-                    LOGGER.warn("javac: {}", diagnostic);
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        errors++;
+                        if (isMissingSymbol(diagnostic) && mayBeProvided(diagnostic, droppedJars)) {
+                            missingSymbolErrors++;
+                        }
+                    }
+                    if (delayed != null) {
+                        delayed.add(diagnostic);
+                    } else {
+                        LOGGER.warn("javac: {}", diagnostic);
+                    }
                 },
                 javacOpts,
                 null,
                 files);
         final Trees trees = Trees.instance(task);
+        Metrics.CompilerListener listener = Metrics.taskListener();
+        task.addTaskListener(listener);
 
         final Set<String> seenPackages = new HashSet<>();
 
         try {
             Iterable<? extends CompilationUnitTree> units = task.parse();
-            task.analyze();
-            for (final CompilationUnitTree unit : units) {
-
-                try {
-                    ExpressionTree pkgName = unit.getPackageName();
-                    if (pkgName != null && !seenPackages.contains(pkgName.toString())) {
-                        seenPackages.add(pkgName.toString());
-                        writePackageSymbol(pkgName.toString());
+            Map<String, Set<String>> sourceTypes = null;
+            ClassPathIndex.Classes outlineClassPath = null;
+            if (outline) {
+                sourceTypes = OutlineScanner.indexTypes(units);
+                List<File> classPath = new ArrayList<>(bootClassPathFiles);
+                classPath.addAll(classPathFiles);
+                outlineClassPath = new ClassPathIndex.Classes(classPath);
+            } else {
+                // files javac reads from source path on demand are only entered, not attributed
+                JavacTaskImpl taskImpl = (JavacTaskImpl) task;
+                taskImpl.analyze(taskImpl.enter());
+            }
+            listener.close();
+            if (pruned) {
+                setClassPath(classPathFiles);
+                if (missingSymbolErrors > 0) {
+                    LOGGER.info("Missing symbols may be provided by {} pruned class path entries, " +
+                            "compiling again with the full class path", droppedJars.size());
+                    pruneClassPath = false;
+                    try {
+                        graphJavaFiles(files);
+                    } finally {
+                        pruneClassPath = true;
+                    }
+                    return;
+                }
+                for (Diagnostic<?> diagnostic : delayed) {
+                    LOGGER.warn("javac: {}", diagnostic);
+                }
+            }
+            try (Metrics.Timer ignored = Metrics.start("scan")) {
+                for (final CompilationUnitTree unit : units) {
+
+                    try {
+                        ExpressionTree pkgName = unit.getPackageName();
+                        if (pkgName != null && !seenPackages.contains(pkgName.toString())) {
+                            seenPackages.add(pkgName.toString());
+                            writePackageSymbol(pkgName.toString());
+                        }
+
+                        long start = System.nanoTime();
+                        TreePath root = new TreePath(unit);
+                        Metrics.FileCost cost = Metrics.file(unit.getSourceFile().getName());
+                        long size = trees.getSourcePositions().getEndPosition(unit, unit);
+                        if (outline) {
+                            OutlineScanner scanner = new OutlineScanner(emit, trees, sourceTypes, outlineClassPath);
+                            scanner.scan(root, null);
+                            cost.addScan(System.nanoTime() - start, size, scanner.defs, scanner.refs,
+                                    scanner.duplicateDefs, 0);
+                        } else {
+                            TreeScanner scanner = new TreeScanner(emit, trees);
+                            scanner.scan(root, null);
+                            cost.addScan(System.nanoTime() - start, size, scanner.defs, scanner.refs,
+                                    scanner.duplicateDefs, scanner.duplicateRefs);
+                        }
+                    } catch (Exception e) {
+                        LOGGER.warn("Skipping compilation unit {} ({})", unit.getPackageName(), unit.getSourceFile(), e);
                     }
-
-                    TreePath root = new TreePath(unit);
-                    new TreeScanner(emit, trees).scan(root, null);
-                } catch (Exception e) {
-                    LOGGER.warn("Skipping compilation unit {} ({})", unit.getPackageName(), unit.getSourceFile(), e);
                 }
             }
+            if (classOutput != null && !outline) {
+                generateClasses(task);
+            }
         } catch (Exception e) {
             LOGGER.warn("Compilation failed", e);
             for (Diagnostic<?> diagnostic : diags.getDiagnostics()) {
@@ -221,7 +410,145 @@ public class Grapher {
                     + "As of Nov 7, 2014, the Oracle 8 JDK is one of those compilers.\n"
                     + "See https://bugs.openjdk.java.net/browse/JDK-8062359?page=com.atlassian.jira.plugin.system.issuetabpanels:comment-tabpanel\n"
                     + "and compile OpenJDK 8 with that workaround. OpenJDK 8 build instructions: http://openjdk.java.net/projects/build-infra/guide.html\nWe can remove this once jdk 8u26+ is released. NOTE that you need to install from the jdk8u hg repo, not jdk8 (as that is frozen when the first version of jdk8 was released).");
-            System.exit(1);
+            throw new IOException("Compilation failed", e);
+        }
+    }
+
+    /**
+     * Updates class path used by javac
+     * @param classPath class path entries
+     * @throws IOException
+     */
+    private void setClassPath(List<File> classPath) throws IOException {
+        fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+        int pos = javacOpts.indexOf("-classpath");
+        javacOpts.set(pos + 1, StringUtils.join(classPath, SystemUtils.PATH_SEPARATOR));
+    }
+
+    /**
+     * Updates source path used by javac
+     * @param sourcePath source path entries
+     * @throws IOException
+     */
+    private void setSourcePath(List<File> sourcePath) throws IOException {
+        if (sourcePath.isEmpty()) {
+            return;
+        }
+        fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcePath);
+        String value = StringUtils.join(sourcePath, SystemUtils.PATH_SEPARATOR);
+        int pos = javacOpts.indexOf("-sourcepath");
+        if (pos < 0) {
+            javacOpts.add("-sourcepath");
+            javacOpts.add(value);
+        } else {
+            javacOpts.set(pos + 1, value);
+        }
+    }
+
+    /**
+     * @param file source file
+     * @return source directory of a given file according to its package declaration or null if file's location
+     * does not match its package
+     * @throws IOException
+     */
+    private static File getSourceRoot(File file) throws IOException {
+        // package declaration is ASCII in any supported encoding
+        Matcher matcher = PACKAGE.matcher(FileUtils.readFileToString(file, StandardCharsets.ISO_8859_1));
+        File dir = file.getParentFile();
+        if (!matcher.find()) {
+            return dir;
+        }
+        String[] names = matcher.group(1).trim().split("\\s*\\.\\s*");
+        for (int i = names.length - 1; i >= 0; i--) {
+            if (dir == null || !dir.getName().equals(names[i])) {
+                LOGGER.debug("Location of {} does not match its package", file);
+                return null;
+            }
+            dir = dir.getParentFile();
+        }
+        return dir;
+    }
+
+    /**
+     * @param diagnostic javac diagnostic
+     * @return true if diagnostic reports unknown symbol, package, or missing class file
+     */
+    private static boolean isMissingSymbol(Diagnostic<?> diagnostic) {
+        String code = diagnostic.getCode();
+        return code != null && (code.startsWith("compiler.err.cant.resolve") ||
+                code.equals("compiler.err.doesnt.exist") ||
+                code.equals("compiler.err.cant.access"));
+    }
+
+    /**
+     * @param diagnostic missing symbol diagnostic
+     * @param jars       JAR files
+     * @return true if symbol or package diagnostic refers to may be provided by one of given JAR files, that is
+     * if JAR provides a package which is a dotted prefix of the name. Names of diagnostics not produced by javac
+     * are unknown, so they may be provided by any JAR
+     */
+    static boolean mayBeProvided(Diagnostic<?> diagnostic, Collection<File> jars) {
+        JCDiagnostic d;
+        if (diagnostic instanceof JCDiagnostic) {
+            d = (JCDiagnostic) diagnostic;
+        } else if (diagnostic instanceof ClientCodeWrapper.DiagnosticSourceUnwrapper) {
+            d = ((ClientCodeWrapper.DiagnosticSourceUnwrapper) diagnostic).d;
+        } else {
+            return !jars.isEmpty();
+        }
+        Collection<String> names = new ArrayList<>();
+        collectNames(d.getArgs(), names);
+        for (String name : names) {
+            for (File jar : jars) {
+                if (ClassPathIndex.mayProvide(jar, name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects names of symbols, types, and packages from diagnostic arguments (including nested diagnostics)
+     * @param args diagnostic arguments
+     * @param target collection to add names to
+     */
+    private static void collectNames(Object[] args, Collection<String> target) {
+        if (args == null) {
+            return;
+        }
+        for (Object arg : args) {
+            if (arg instanceof Symbol) {
+                target.add(((Symbol) arg).getQualifiedName().toString());
+            } else if (arg instanceof Type) {
+                Symbol symbol = ((Type) arg).tsym;
+                if (symbol != null) {
+                    target.add(symbol.getQualifiedName().toString());
+                }
+            } else if (arg instanceof JCDiagnostic) {
+                collectNames(((JCDiagnostic) arg).getArgs(), target);
+            } else if (arg instanceof CharSequence) {
+                target.add(arg.toString());
+            }
+        }
+    }
+
+    /**
+     * Writes class files of compiled sources to class output directory, removes directory if there were errors
+     * @param task compilation task to generate class files for
+     */
+    @SuppressWarnings("try")
+    private void generateClasses(JavacTask task) {
+        try (Metrics.Timer ignored = Metrics.start("generate")) {
+            if (errors == 0) {
+                task.generate();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to generate class files", e);
+        }
+        if (errors > 0 || !classOutput.isDirectory()) {
+            LOGGER.info("Class files were not generated due to compilation errors");
+            FileUtils.deleteQuietly(classOutput);
         }
     }
 
@@ -240,6 +567,18 @@ public class Grapher {
         emit.writeDef(s);
     }
 
+    /**
+     * Command line options controlling how sources are graphed
+     */
+    public static class Options {
+
+        @Parameter(names = {"--prune-classpath"}, description = "Restrict class path to entries providing packages referenced by unit's sources. If javac can't find a symbol which package is provided by a dropped entry, unit is compiled again with the full class path")
+        boolean pruneClassPath;
+
+        @Parameter(names = {"--outline"}, description = "Only parse sources and emit definitions of types and their members, without references")
+        boolean outline;
+    }
+
     /**
      * Closes grapher and releases underlying resources
      * @throws IOException
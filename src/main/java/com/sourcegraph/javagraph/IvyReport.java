@@ -0,0 +1,182 @@
+package com.sourcegraph.javagraph;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts resolved dependencies from Ivy reports (ivy-report XML files produced by sbt's "ivyReport" task).
+ * Reports are read with StAX, only module and revision elements are looked at.
+ * Results are cached by report's location, and reused while report's modification time or content hash match
+ */
+public class IvyReport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IvyReport.class);
+
+    /**
+     * Directory (relative to current working directory) to keep cache in
+     */
+    private static final String REPO_DIR = ".sbt-srclib";
+
+    private static final String CACHE_FILE = "ivy-reports.json";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Report location => cached dependencies
+     */
+    private static Map<String, CacheEntry> cache;
+
+    private static boolean modified;
+
+    /**
+     * Extracts dependencies from Ivy report, evicted revisions and revisions that failed to resolve are skipped.
+     * Uses cached result if report wasn't changed since the last time
+     *
+     * @param file Ivy report file
+     * @return list of triplets (organisation, name, revision) in report's order
+     * @throws IOException
+     */
+    public static synchronized List<String[]> getDependencies(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        CacheEntry entry = getCache().get(key);
+        if (entry != null && entry.lastModified == lastModified) {
+            LOGGER.debug("Ivy report {} is up to date", file);
+            return entry.dependencies;
+        }
+
+        String hash;
+        try (InputStream is = new FileInputStream(file)) {
+            hash = DigestUtils.sha1Hex(is);
+        }
+        if (entry != null && hash.equals(entry.hash)) {
+            LOGGER.debug("Ivy report {} was touched but not changed", file);
+        } else {
+            LOGGER.debug("Parsing Ivy report {}", file);
+            entry = new CacheEntry();
+            entry.hash = hash;
+            entry.dependencies = parse(file);
+        }
+        entry.lastModified = lastModified;
+        cache.put(key, entry);
+        modified = true;
+        return entry.dependencies;
+    }
+
+    /**
+     * Writes cache to disk if there were changes
+     */
+    public static synchronized void saveCache() {
+        if (!modified) {
+            return;
+        }
+        File file = getCacheFile();
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                new Gson().toJson(cache, writer);
+            }
+            modified = false;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write Ivy reports cache {}", file, e);
+        }
+    }
+
+    /**
+     * Reads Ivy report
+     *
+     * @param file Ivy report file
+     * @return list of triplets (organisation, name, revision)
+     * @throws IOException
+     */
+    static List<String[]> parse(File file) throws IOException {
+        List<String[]> dependencies = new ArrayList<>();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+            try {
+                String organisation = null;
+                String module = null;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "module":
+                            organisation = reader.getAttributeValue(null, "organisation");
+                            module = reader.getAttributeValue(null, "name");
+                            break;
+                        case "revision":
+                            if (reader.getAttributeValue(null, "error") != null ||
+                                    reader.getAttributeValue(null, "evicted") != null) {
+                                break;
+                            }
+                            dependencies.add(new String[]{organisation,
+                                    module,
+                                    reader.getAttributeValue(null, "name")});
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to parse Ivy report " + file, e);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return cache, loads it from disk if needed
+     */
+    private static Map<String, CacheEntry> getCache() {
+        if (cache != null) {
+            return cache;
+        }
+        File file = getCacheFile();
+        if (file.isFile()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                cache = new Gson().fromJson(reader, new TypeToken<Map<String, CacheEntry>>() {
+                }.getType());
+            } catch (Exception e) {
+                LOGGER.warn("Unable to read Ivy reports cache {}", file, e);
+            }
+        }
+        if (cache == null) {
+            cache = new HashMap<>();
+        }
+        return cache;
+    }
+
+    private static File getCacheFile() {
+        return PathUtil.CWD.resolve(REPO_DIR).resolve(CACHE_FILE).toFile();
+    }
+
+    /**
+     * Cached information about single report
+     */
+    private static class CacheEntry {
+        long lastModified;
+        String hash;
+        List<String[]> dependencies;
+    }
+}
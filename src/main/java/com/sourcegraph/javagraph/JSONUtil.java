@@ -1,14 +1,14 @@
 package com.sourcegraph.javagraph;
 
+import com.beust.jcommander.Parameter;
 import com.google.gson.*;
 import org.apache.commons.io.IOUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.Writer;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * JSON utilities
@@ -16,24 +16,88 @@ import java.nio.charset.StandardCharsets;
 public class JSONUtil {
 
     /**
-     * Writes object as UTF-8 JSON
+     * Size of output buffers used in compact mode
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Writes object as pretty-printed UTF-8 JSON
      *
      * @param o object to write
      */
     public static void writeJSON(Object o) {
-        Writer w = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
-        gson().toJson(o, w);
-        IOUtils.closeQuietly(w);
+        writeJSON(o, new Options());
+    }
+
+    /**
+     * Writes object as UTF-8 JSON to standard output. In compact mode object is serialized without indentation
+     * through large buffers, optionally wrapped into gzip stream
+     *
+     * @param o       object to write
+     * @param options output options
+     */
+    public static void writeJSON(Object o, Options options) {
+        if (!options.compact && !options.gzip) {
+            write(o, true, new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true));
+            return;
+        }
+        System.out.flush();
+        writeJSON(o, options, new FileOutputStream(FileDescriptor.out));
+    }
+
+    /**
+     * Writes object as UTF-8 JSON to a given stream through large buffers, optionally wrapped into gzip stream.
+     * Stream is closed when done
+     *
+     * @param o       object to write
+     * @param options output options
+     * @param os      target stream
+     */
+    public static void writeJSON(Object o, Options options, OutputStream os) {
+        Writer w;
+        try {
+            os = new BufferedOutputStream(os, BUFFER_SIZE);
+            if (options.gzip) {
+                os = new GZIPOutputStream(os, BUFFER_SIZE);
+            }
+            w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(os);
+            throw new JsonIOException(e);
+        }
+        write(o, !options.compact, w);
+    }
+
+    /**
+     * Serializes object and closes writer
+     *
+     * @param o      object to write
+     * @param pretty if true, output will be pretty-printed
+     * @param w      target writer
+     */
+    @SuppressWarnings("try")
+    private static void write(Object o, boolean pretty, Writer w) {
+        try (Metrics.Timer ignored = Metrics.start("serialize")) {
+            gson(pretty).toJson(o, w);
+            w.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        } finally {
+            IOUtils.closeQuietly(w);
+        }
     }
 
     /**
      * Constructs new writer implementation
      *
+     * @param pretty if true, output will be pretty-printed
      * @return configured writer implementation
      */
-    private static Gson gson() {
+    static Gson gson(boolean pretty) {
         GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.setPrettyPrinting();
+        if (pretty) {
+            gsonBuilder.setPrettyPrinting();
+        }
         gsonBuilder.disableHtmlEscaping();
         gsonBuilder.registerTypeAdapter(Def.class, new Def.JSONSerializer());
         gsonBuilder.registerTypeAdapter(Ref.class, new Ref.JSONSerializer());
@@ -67,4 +131,16 @@ public class JSONUtil {
         return gsonBuilder.create();
     }
 
+    /**
+     * JSON output options shared by commands
+     */
+    public static class Options {
+
+        @Parameter(names = {"--compact-json"}, description = "Write compact JSON (no indentation) through large output buffers")
+        boolean compact;
+
+        @Parameter(names = {"--gzip"}, description = "Compress JSON output with gzip")
+        boolean gzip;
+    }
+
 }
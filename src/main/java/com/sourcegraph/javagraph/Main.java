@@ -32,10 +32,18 @@ public class Main {
         ScanCommand scan = new ScanCommand();
         GraphCommand graph = new GraphCommand();
         DepresolveCommand depresolve = new DepresolveCommand();
+        GraphAllCommand graphAll = new GraphAllCommand();
 
         jc.addCommand("scan", scan);
         jc.addCommand("graph", graph);
         jc.addCommand("depresolve", depresolve);
+        jc.addCommand(GraphAllCommand.NAME, graphAll);
+
+        // synthetic project generator is registered only when requested to keep it out of usage
+        GenerateCommand generate = new GenerateCommand();
+        if (args.length > 0 && GenerateCommand.NAME.equals(args[0])) {
+            jc.addCommand(GenerateCommand.NAME, generate);
+        }
 
         try {
             jc.parse(args);
@@ -54,6 +62,12 @@ public class Main {
             case "depresolve":
                 depresolve.Execute();
                 break;
+            case GraphAllCommand.NAME:
+                graphAll.Execute();
+                break;
+            case GenerateCommand.NAME:
+                generate.Execute();
+                break;
             default:
                 LOGGER.error("Unknown command {}", jc.getParsedCommand());
                 jc.usage();
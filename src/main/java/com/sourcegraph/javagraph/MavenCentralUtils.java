@@ -2,6 +2,8 @@ package com.sourcegraph.javagraph;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -13,10 +15,17 @@ import org.apache.solr.common.SolrDocumentList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
 
 public class MavenCentralUtils {
 
@@ -24,6 +33,32 @@ public class MavenCentralUtils {
 
     private static final String BASE_URL = "http://search.maven.org/solrsearch";
 
+    /**
+     * Name of persistent cache file (SHA-1 => groupId:artifactId:version) inside of local Maven repository
+     */
+    private static final String CACHE_FILE = "srclib-jar-sha1.properties";
+
+    /**
+     * Cache value of SHA-1 not known to Maven Central, such JARs are not looked up again
+     */
+    static final String NOT_FOUND = "-";
+
+    /**
+     * Size of region mapped into memory at once while hashing JAR files
+     */
+    private static final long MAP_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Number of concurrent requests to Maven Central
+     */
+    private static final int REMOTE_LOOKUP_THREADS = 4;
+
+    private static final Pattern POM_PROPERTIES = Pattern.compile("META-INF/maven/[^/]+/[^/]+/pom\\.properties");
+
+    private static SolrClient client;
+
+    private static Properties cache;
+
     public static RawDependency searchInCentral(Path jar) {
         try {
             return searchInCentral(calculateSha(jar));
@@ -33,26 +68,175 @@ public class MavenCentralUtils {
         }
     }
 
-    private static String calculateSha(Path file) throws IOException {
-        try (InputStream stream = new FileInputStream(file.toFile())) {
-            return Hex.encodeHexString(DigestUtils.sha1(stream));
+    /**
+     * Identifies Maven coordinates of JAR files. Each JAR is looked up in the following order
+     * - META-INF/maven/.../pom.properties embedded into JAR
+     * - persistent SHA-1 cache, which also keeps SHA-1 of JARs Maven Central doesn't know
+     * - Maven Central search by SHA-1, all JARs not identified locally are looked up in one batch
+     *
+     * @param jars JAR files to identify
+     * @return map (JAR file => dependency) containing only JARs that were identified, dependencies have no
+     * file, scope, and path set
+     */
+    public static Map<Path, RawDependency> identify(Collection<Path> jars) {
+        Map<Path, RawDependency> ret = new ConcurrentHashMap<>();
+
+        // step 1: pom.properties
+        Collection<Path> unknown = new ConcurrentLinkedQueue<>();
+        jars.parallelStream().distinct().forEach(jar -> {
+            RawDependency dependency = readPomProperties(jar);
+            if (dependency != null) {
+                ret.put(jar, dependency);
+            } else {
+                unknown.add(jar);
+            }
+        });
+
+        // step 2: SHA-1 cache
+        Map<Path, String> hashes = new ConcurrentHashMap<>();
+        unknown.parallelStream().forEach(jar -> {
+            try {
+                hashes.put(jar, calculateSha(jar));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to compute SHA-1 of {}", jar, e);
+            }
+        });
+        Map<String, Collection<Path>> remote;
+        synchronized (MavenCentralUtils.class) {
+            remote = lookupCache(getCache(), hashes, ret);
+        }
+        if (remote.isEmpty()) {
+            return ret;
+        }
+
+        // step 3: remote lookup of everything left
+        LOGGER.info("Looking for {} artifacts in Maven Central", remote.size());
+        ExecutorService executorService = Executors.newFixedThreadPool(REMOTE_LOOKUP_THREADS);
+        Map<String, Future<RawDependency>> futures = new TreeMap<>();
+        for (String sha : remote.keySet()) {
+            futures.put(sha, executorService.submit(() -> searchInCentral(sha)));
+        }
+        executorService.shutdown();
+        boolean modified = false;
+        for (Map.Entry<String, Future<RawDependency>> entry : futures.entrySet()) {
+            RawDependency dependency;
+            try {
+                dependency = entry.getValue().get();
+            } catch (InterruptedException | ExecutionException e) {
+                LOGGER.warn("Failed to search for jar dependency", e);
+                continue;
+            }
+            String coordinates = dependency == null ? NOT_FOUND : toCoordinates(dependency);
+            if (dependency != null) {
+                for (Path jar : remote.get(entry.getKey())) {
+                    ret.put(jar, fromCoordinates(coordinates));
+                }
+            }
+            synchronized (MavenCentralUtils.class) {
+                getCache().setProperty(entry.getKey(), coordinates);
+            }
+            modified = true;
+        }
+        if (modified) {
+            saveCache();
+        }
+        return ret;
+    }
+
+    /**
+     * Identifies JARs using SHA-1 cache
+     *
+     * @param cache      SHA-1 cache (SHA-1 =&gt; coordinates or {@link #NOT_FOUND})
+     * @param hashes     JAR files to identify and their SHA-1
+     * @param identified map to put identified JARs to
+     * @return JARs to look up in Maven Central (SHA-1 =&gt; JAR files), that is ones not present in cache
+     */
+    static Map<String, Collection<Path>> lookupCache(Properties cache,
+                                                     Map<Path, String> hashes,
+                                                     Map<Path, RawDependency> identified) {
+        Map<String, Collection<Path>> remote = new TreeMap<>();
+        for (Map.Entry<Path, String> entry : hashes.entrySet()) {
+            String coordinates = cache.getProperty(entry.getValue());
+            if (coordinates == null) {
+                remote.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+                continue;
+            }
+            RawDependency dependency = fromCoordinates(coordinates);
+            if (dependency != null) {
+                identified.put(entry.getKey(), dependency);
+            }
+        }
+        return remote;
+    }
+
+    /**
+     * Computes SHA-1 of a given file using memory-mapped reads
+     *
+     * @param file file to compute hash for
+     * @return hex-encoded SHA-1
+     * @throws IOException
+     */
+    static String calculateSha(Path file) throws IOException {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position,
+                        Math.min(MAP_CHUNK_SIZE, size - position));
+                digest.update(buffer);
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Extracts Maven coordinates from META-INF/maven/GROUP/ARTIFACT/pom.properties.
+     * The one that matches JAR file name is taken, even if there is only one: JAR may shade a single library
+     *
+     * @param jar JAR file
+     * @return dependency or null if none of JAR's pom.properties matches JAR file name
+     */
+    static RawDependency readPomProperties(Path jar) {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            List<RawDependency> candidates = new ArrayList<>();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!POM_PROPERTIES.matcher(entry.getName()).matches()) {
+                    continue;
+                }
+                Properties props = new Properties();
+                try (InputStream is = jarFile.getInputStream(entry)) {
+                    props.load(is);
+                }
+                String groupId = props.getProperty("groupId");
+                String artifactId = props.getProperty("artifactId");
+                String version = props.getProperty("version");
+                if (StringUtils.isEmpty(groupId) || StringUtils.isEmpty(artifactId) || StringUtils.isEmpty(version)) {
+                    continue;
+                }
+                candidates.add(new RawDependency(groupId, artifactId, version, null, null, null));
+            }
+            String fileName = jar.getFileName().toString();
+            for (RawDependency candidate : candidates) {
+                if (fileName.startsWith(candidate.artifactID + '-' + candidate.version)) {
+                    return candidate;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read {}", jar, e);
         }
+        return null;
     }
 
     private static RawDependency searchInCentral(String sha) throws IOException, SolrServerException {
         LOGGER.info("Looking for artifact by SHA {}", sha);
-        XMLResponseParser p = new XMLResponseParser();
-        SolrClient client = new HttpSolrClient(BASE_URL, null, new XMLResponseParser() {
-            @Override
-            public String getContentType() {
-                return "text/xml; charset=UTF-8";
-            }
-        });
         SolrQuery query = new SolrQuery();
         query.setQuery("1:\"" + sha + "\"");
         query.setRows(2);
         query.setShowDebugInfo(true);
-        QueryResponse resp = client.query(query);
+        QueryResponse resp = getClient().query(query);
         SolrDocumentList docs = resp.getResults();
         if (docs.size() != 1) {
             return null;
@@ -69,4 +253,71 @@ public class MavenCentralUtils {
 
     }
 
+    /**
+     * @return Solr client shared by all lookups
+     */
+    private static synchronized SolrClient getClient() {
+        if (client == null) {
+            client = new HttpSolrClient(BASE_URL, null, new XMLResponseParser() {
+                @Override
+                public String getContentType() {
+                    return "text/xml; charset=UTF-8";
+                }
+            });
+        }
+        return client;
+    }
+
+    /**
+     * @return persistent SHA-1 cache, loads it if needed
+     */
+    private static Properties getCache() {
+        if (cache == null) {
+            cache = new Properties();
+            File file = getCacheFile();
+            if (file.isFile()) {
+                try (InputStream is = new FileInputStream(file)) {
+                    cache.load(is);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to read JAR identification cache {}", file, e);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Saves persistent SHA-1 cache
+     */
+    private static synchronized void saveCache() {
+        File file = getCacheFile();
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            try (OutputStream os = new FileOutputStream(file)) {
+                getCache().store(os, null);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write JAR identification cache {}", file, e);
+        }
+    }
+
+    private static File getCacheFile() {
+        return PathUtil.CWD.resolve(MavenProject.getRepoDir()).resolve(CACHE_FILE).toFile();
+    }
+
+    private static String toCoordinates(RawDependency dependency) {
+        return dependency.groupID + ':' + dependency.artifactID + ':' + dependency.version;
+    }
+
+    private static RawDependency fromCoordinates(String coordinates) {
+        if (coordinates == null || NOT_FOUND.equals(coordinates)) {
+            return null;
+        }
+        String parts[] = coordinates.split(":", 3);
+        if (parts.length != 3) {
+            return null;
+        }
+        return new RawDependency(parts[0], parts[1], parts[2], null, null, null);
+    }
+
 }
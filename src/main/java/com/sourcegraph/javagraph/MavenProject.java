@@ -2,6 +2,7 @@ package com.sourcegraph.javagraph;
 
 import com.google.common.collect.Iterators;
 import com.sourcegraph.javagraph.maven.vendored.DefaultModelBuilderFactory;
+import com.sourcegraph.javagraph.maven.plugins.GeneratedSources;
 import com.sourcegraph.javagraph.maven.plugins.MavenPlugins;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -74,6 +75,17 @@ public class MavenProject implements Project {
     private List<String> profileIds;
     private List<ArtifactRepository> artifactRepositories;
 
+    /**
+     * Indicates if trimmed effective model (see {@link DefaultModelBuilderFactory#newLightweightInstance()})
+     * should be built instead of the full one
+     */
+    private boolean lightweightModel;
+
+    /**
+     * Lightweight model builder is stateless and shared between projects, so super POM is parsed only once
+     */
+    private static ModelBuilder lightweightModelBuilder;
+
     private static SettingsBuilder settingsBuilder;
     private static RepositorySystem repositorySystem;
     private static RepositorySystemSession repositorySystemSession;
@@ -93,9 +105,17 @@ public class MavenProject implements Project {
     }
 
     public MavenProject(Path pomFile, List<String> profileIds, List<ArtifactRepository> artifactRepositories) {
+        this(pomFile, profileIds, artifactRepositories, false);
+    }
+
+    public MavenProject(Path pomFile,
+                        List<String> profileIds,
+                        List<ArtifactRepository> artifactRepositories,
+                        boolean lightweightModel) {
         this.pomFile = pomFile;
         this.profileIds = profileIds;
         this.artifactRepositories = artifactRepositories;
+        this.lightweightModel = lightweightModel;
     }
 
     /**
@@ -117,7 +137,6 @@ public class MavenProject implements Project {
     protected org.apache.maven.project.MavenProject getMavenProject() throws ModelBuildingException {
         if (mavenProject == null) {
             LOGGER.debug("Building Maven project structure from {}", pomFile);
-            DefaultModelBuilderFactory factory = new DefaultModelBuilderFactory();
             ModelBuildingRequest request = new DefaultModelBuildingRequest();
             MavenModelResolver resolver = new MavenModelResolver(new DefaultRemoteRepositoryManager(), repositorySystem, repositorySystemSession);
 
@@ -141,7 +160,7 @@ public class MavenProject implements Project {
                 LOGGER.warn("Invalid repository provided.", e);
             }
 
-            ModelBuildingResult result = factory.newInstance().build(request);
+            ModelBuildingResult result = getModelBuilder().build(request);
             mavenProject = new org.apache.maven.project.MavenProject(result.getEffectiveModel());
             for (String modelId : result.getModelIds()) {
                 mavenProject.getModel().getProfiles().stream()
@@ -155,6 +174,21 @@ public class MavenProject implements Project {
         return mavenProject;
     }
 
+    /**
+     * @return model builder to use, shared lightweight one or new full one depending on current project's settings
+     */
+    private ModelBuilder getModelBuilder() {
+        if (!lightweightModel) {
+            return new DefaultModelBuilderFactory().newInstance();
+        }
+        synchronized (MavenProject.class) {
+            if (lightweightModelBuilder == null) {
+                lightweightModelBuilder = new DefaultModelBuilderFactory().newLightweightInstance();
+            }
+            return lightweightModelBuilder;
+        }
+    }
+
     /**
      * Initializes repository system
      *
@@ -316,10 +350,16 @@ public class MavenProject implements Project {
                             toString()));
         }
 
-        Collection<String> sourceRoots = collectSourceRoots(proj.pomFile, proj);
+        Collection<String> sourceRoots = collectSourceRoots(proj.pomFile, proj, false);
         info.sourceDirs = sourceRoots.stream().map(sourceRoot ->
                 new String[]{info.getName(), info.version, sourceRoot}).collect(Collectors.toList());
         info.sources = collectSourceFiles(sourceRoots);
+        Collection<String> testSourceRoots = collectSourceRoots(proj.pomFile, proj, true);
+        testSourceRoots.removeAll(sourceRoots);
+        info.testSourceDirs = testSourceRoots.stream().map(sourceRoot ->
+                new String[]{info.getName() + SourceUnit.TEST_SUFFIX, info.version, sourceRoot}).
+                collect(Collectors.toList());
+        info.testSources = collectSourceFiles(testSourceRoots);
         info.sourceEncoding = proj.getMavenProject().getProperties().getProperty(SOURCE_CODE_ENCODING_PROPERTY);
         info.sourceVersion = proj.getMavenProject().getProperties().getProperty(SOURCE_CODE_VERSION_PROPERTY,
                 DEFAULT_SOURCE_CODE_VERSION);
@@ -335,6 +375,19 @@ public class MavenProject implements Project {
      * @throws IOException
      */
     public static Collection<SourceUnit> findAllSourceUnits(List<String> profileIds, List<ArtifactRepository> artifactRepositories) throws IOException {
+        return findAllSourceUnits(profileIds, artifactRepositories, false);
+    }
+
+    /**
+     * Retrieves all source units from current working directory by scanning for pom.xml files and processing them
+     *
+     * @param lightweightModel if true, trimmed effective models are built
+     * @return all source units collected
+     * @throws IOException
+     */
+    public static Collection<SourceUnit> findAllSourceUnits(List<String> profileIds,
+                                                            List<ArtifactRepository> artifactRepositories,
+                                                            boolean lightweightModel) throws IOException {
 
         LOGGER.debug("Retrieving source units");
 
@@ -345,13 +398,30 @@ public class MavenProject implements Project {
 
         Collection<BuildAnalysis.BuildInfo> infos = new ArrayList<>();
         Collection<Repository> repositories = new HashSet<>();
-        for (Path pomFile : pomFiles) {
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Processing POM file {}", pomFile.toAbsolutePath());
+        // building models first, code generation plugins are postponed to run in a single Maven invocation
+        Collection<MavenProject> projects = new ArrayList<>();
+        GeneratedSources.getInstance().beginBatch();
+        try {
+            for (Path pomFile : pomFiles) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Processing POM file {}", pomFile.toAbsolutePath());
+                }
+                try {
+                    MavenProject project = new MavenProject(pomFile, profileIds, artifactRepositories, lightweightModel);
+                    project.getMavenProject();
+                    projects.add(project);
+                } catch (Exception e) {
+                    LOGGER.warn("Error processing POM file {}", pomFile.toAbsolutePath(), e);
+                }
             }
+        } finally {
+            GeneratedSources.getInstance().endBatch(PathUtil.CWD.resolve(getRepoDir()).toFile());
+        }
+
+        for (MavenProject project : projects) {
+            Path pomFile = project.pomFile;
             try {
-                MavenProject project = new MavenProject(pomFile, profileIds, artifactRepositories);
                 BuildAnalysis.BuildInfo info = createBuildInfo(project);
                 infos.add(info);
                 artifactsByUnitId.put(info.getName() + '/' + info.version, info);
@@ -383,13 +453,14 @@ public class MavenProject implements Project {
         // step 3: resolving dependencies between units and updating source path and class path
 
         Collection<SourceUnit> ret = new ArrayList<>();
+        Collection<SourceUnit> testUnits = new ArrayList<>();
         for (BuildAnalysis.BuildInfo info : infos) {
             SourceUnit unit = new SourceUnit();
             unit.Files = new LinkedList<>();
             unit.Name = info.getName();
             unit.Dir = info.projectDir;
             unit.Files.addAll(info.sources);
-            unit.Dependencies = new ArrayList<>(info.dependencies);
+            unit.Dependencies = getMainDependencies(info);
             unit.Type = SourceUnit.DEFAULT_TYPE;
             unit.Data.put("POMFile", info.buildFile);
             unit.Data.put("Description", info.attrs.description);
@@ -444,11 +515,79 @@ public class MavenProject implements Project {
                 unit.Data.put("Android", true);
             }
             ret.add(unit);
+
+            if (hasTestUnit(info)) {
+                testUnits.add(createTestUnit(unit, info, sourcePath));
+            }
         }
+        // main units go first, so that they may be graphed before test units that depend on them
+        ret.addAll(testUnits);
 
         return ret;
     }
 
+    /**
+     * Makes unit from test sources of a given Maven project. Test unit refers to main one, has test-scoped
+     * dependencies only (dependencies of main unit are implied), and its source path includes source path of
+     * main unit
+     *
+     * @param mainUnit   unit made of main sources
+     * @param info       build info of Maven project
+     * @param sourcePath source path of main unit
+     * @return test unit
+     */
+    static SourceUnit createTestUnit(SourceUnit mainUnit,
+                                             BuildAnalysis.BuildInfo info,
+                                             Collection<String[]> sourcePath) {
+        SourceUnit unit = new SourceUnit();
+        unit.Name = mainUnit.Name + SourceUnit.TEST_SUFFIX;
+        unit.Dir = mainUnit.Dir;
+        unit.Files = new LinkedList<>(info.testSources);
+        unit.Dependencies = info.dependencies.stream().
+                filter(MavenProject::isTestScope).
+                collect(Collectors.toList());
+        unit.Type = SourceUnit.DEFAULT_TYPE;
+        unit.Data.put(SourceUnit.MAIN_UNIT, mainUnit.Name);
+        unit.Data.put("POMFile", info.buildFile);
+        unit.Data.put("SourceVersion", info.sourceVersion);
+        unit.Data.put("SourceEncoding", info.sourceEncoding);
+        Set<String[]> testSourcePath = sourcePath.stream().map(String[]::clone).collect(Collectors.toSet());
+        testSourcePath.addAll(info.testSourceDirs);
+        unit.Data.put("SourcePath", testSourcePath);
+        if (info.androidSdk != null) {
+            unit.Data.put("Android", true);
+        }
+        return unit;
+    }
+
+    /**
+     * @param info build info of Maven project
+     * @return true if separate unit is made of project's test sources
+     */
+    static boolean hasTestUnit(BuildAnalysis.BuildInfo info) {
+        return !info.testSources.isEmpty();
+    }
+
+    /**
+     * @param info build info of Maven project
+     * @return dependencies of unit made of main sources. Test-scoped dependencies belong to test unit, if there is no
+     * one they are kept in main unit
+     */
+    static List<RawDependency> getMainDependencies(BuildAnalysis.BuildInfo info) {
+        boolean hasTestUnit = hasTestUnit(info);
+        return info.dependencies.stream().
+                filter(dependency -> !hasTestUnit || !isTestScope(dependency)).
+                collect(Collectors.toList());
+    }
+
+    /**
+     * @param dependency dependency to check
+     * @return true if dependency is needed only to compile and run tests
+     */
+    private static boolean isTestScope(RawDependency dependency) {
+        return "test".equals(dependency.scope);
+    }
+
     public static boolean is(SourceUnit unit) {
         return unit.Data.containsKey("POMFile");
     }
@@ -570,21 +709,19 @@ public class MavenProject implements Project {
      *
      * @param pomFile POM file to process
      * @param proj    current project
+     * @param test    if true, test source roots are collected instead of main ones
      * @return collection of source roots of given project, each entry is relative to CWD
      * @throws ModelBuildingException
      */
-    private static Collection<String> collectSourceRoots(Path pomFile, MavenProject proj)
+    private static Collection<String> collectSourceRoots(Path pomFile, MavenProject proj, boolean test)
             throws ModelBuildingException {
         File root = pomFile.getParent().toFile().getAbsoluteFile();
         Set<String> sourceRoots = new HashSet<>();
-        for (String sourceRoot : proj.getMavenProject().getCompileSourceRoots()) {
-            File f = PathUtil.concat(root, sourceRoot);
-            if (f.isDirectory()) {
-                LOGGER.debug("Adding source root {}", f);
-                sourceRoots.add(PathUtil.relativizeCwd(f.toString()));
-            }
-        }
-        for (String sourceRoot : proj.getMavenProject().getTestCompileSourceRoots()) {
+        org.apache.maven.project.MavenProject mavenProject = proj.getMavenProject();
+        List<String> compileSourceRoots = test ?
+                mavenProject.getTestCompileSourceRoots() :
+                mavenProject.getCompileSourceRoots();
+        for (String sourceRoot : compileSourceRoots) {
             File f = PathUtil.concat(root, sourceRoot);
             if (f.isDirectory()) {
                 LOGGER.debug("Adding source root {}", f);
@@ -592,9 +729,11 @@ public class MavenProject implements Project {
             }
         }
 
-        String sourceRoot = proj.getMavenProject().getBuild().getSourceDirectory();
+        String sourceRoot = test ?
+                mavenProject.getBuild().getTestSourceDirectory() :
+                mavenProject.getBuild().getSourceDirectory();
         if (sourceRoot == null) {
-            sourceRoot = "src/main";
+            sourceRoot = test ? "src/test" : "src/main";
         }
         File f = PathUtil.concat(root, sourceRoot);
         if (f.isDirectory()) {
@@ -602,16 +741,6 @@ public class MavenProject implements Project {
             sourceRoots.add(PathUtil.relativizeCwd(f.toString()));
         }
 
-        sourceRoot = proj.getMavenProject().getBuild().getTestSourceDirectory();
-        if (sourceRoot == null) {
-            sourceRoot = "src/test";
-        }
-        f = PathUtil.concat(root, sourceRoot);
-        if (f.isDirectory()) {
-            LOGGER.debug("Adding source root {}", f);
-            sourceRoots.add(PathUtil.relativizeCwd(f.toString()));
-        }
-
         return sourceRoots;
     }
 
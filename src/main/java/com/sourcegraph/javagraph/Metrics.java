@@ -0,0 +1,412 @@
+package com.sourcegraph.javagraph;
+
+import com.beust.jcommander.Parameter;
+import com.google.gson.GsonBuilder;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per-phase execution metrics: wall time, CPU time and allocated bytes. Measurements are taken for the current thread,
+ * so that phases running concurrently on different threads (for example, build system detectors in scan) don't
+ * affect each other. Phases with the same name are accumulated, phases may nest (nested phase is included into outer
+ * one), with exception of javac phases which are accounted exclusively. Graph commands additionally collect costs of
+ * individual source files and report the slowest ones.
+ */
+public class Metrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() &&
+            THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+
+    private static final boolean ALLOCATED_BYTES_SUPPORTED =
+            THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean &&
+                    ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemorySupported() &&
+                    ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemoryEnabled();
+
+    /**
+     * Accumulated phases in order of their first appearance
+     */
+    private static final Map<String, Phase> PHASES = new LinkedHashMap<>();
+
+    /**
+     * Costs of individual source files
+     */
+    private static final Map<String, FileCost> FILES = new HashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts measurement of a phase in the current thread, it should be closed in the same thread
+     *
+     * @param name phase name
+     * @return timer to close when phase is done
+     */
+    public static Timer start(String name) {
+        return new Timer(name);
+    }
+
+    /**
+     * @return javac task listener which measures parse, enter and attribute phases of compilation, it should be closed
+     * when compilation is done
+     */
+    public static CompilerListener taskListener() {
+        return new CompilerListener();
+    }
+
+    /**
+     * @param file source file name
+     * @return per-file cost record of a given source file
+     */
+    public static FileCost file(String file) {
+        synchronized (FILES) {
+            return FILES.computeIfAbsent(file, FileCost::new);
+        }
+    }
+
+    /**
+     * Logs summary of collected metrics at INFO level and optionally writes them as JSON
+     *
+     * @param command command name
+     * @param options metrics options
+     */
+    public static void report(String command, Options options) {
+        Report report = new Report();
+        report.command = command;
+        report.wallMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            report.cpuMillis = TimeUnit.NANOSECONDS.toMillis(
+                    ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime());
+        }
+        synchronized (PHASES) {
+            report.phases = new ArrayList<>(PHASES.values());
+        }
+        synchronized (FILES) {
+            report.slowestFiles = FILES.values().stream().
+                    sorted(Comparator.comparingLong(FileCost::getTotalNanos).reversed()).
+                    limit(options.topFiles).
+                    collect(Collectors.toList());
+        }
+
+        LOGGER.info("{} took {} ms wall, {} ms CPU", command, report.wallMillis, report.cpuMillis);
+        for (Phase phase : report.phases) {
+            LOGGER.info("  {}: {}x, {} ms wall, {} ms CPU, {} MB allocated",
+                    StringUtils.rightPad(phase.name, 10),
+                    phase.count,
+                    phase.wallMillis,
+                    phase.cpuMillis,
+                    phase.allocatedBytes >> 20);
+        }
+        if (!report.slowestFiles.isEmpty()) {
+            LOGGER.info("Slowest files");
+            for (FileCost file : report.slowestFiles) {
+                file.update();
+                LOGGER.info("  {} ms parse, {} ms attribute, {} ms scan, {} defs, {} refs, {} chars: {}",
+                        file.parseMillis,
+                        file.attributeMillis,
+                        file.scanMillis,
+                        file.defs,
+                        file.refs,
+                        file.sourceChars,
+                        PathUtil.relativizeCwd(file.file));
+            }
+        }
+
+        if (StringUtils.isEmpty(options.file)) {
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(options.file), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write metrics to {}", options.file, e);
+        }
+    }
+
+    /**
+     * Adds measurement to a phase
+     *
+     * @param name     phase name
+     * @param from     snapshot taken at the beginning of measurement
+     * @param to       snapshot taken at the end of measurement
+     * @param newEntry true if measurement should increment phase's entries counter
+     */
+    private static void add(String name, Snapshot from, Snapshot to, boolean newEntry) {
+        synchronized (PHASES) {
+            Phase phase = PHASES.computeIfAbsent(name, Phase::new);
+            if (newEntry) {
+                phase.count++;
+            }
+            phase.wallNanos += to.wall - from.wall;
+            phase.cpuNanos += to.cpu - from.cpu;
+            phase.allocatedBytes += to.allocated - from.allocated;
+            phase.wallMillis = TimeUnit.NANOSECONDS.toMillis(phase.wallNanos);
+            phase.cpuMillis = TimeUnit.NANOSECONDS.toMillis(phase.cpuNanos);
+        }
+    }
+
+    /**
+     * Running measurement of a single phase
+     */
+    public static class Timer implements AutoCloseable {
+
+        private final String name;
+        private final Snapshot start;
+
+        private Timer(String name) {
+            this.name = name;
+            this.start = new Snapshot();
+        }
+
+        @Override
+        public void close() {
+            add(name, start, new Snapshot(), true);
+        }
+    }
+
+    /**
+     * Measures javac phases reported by task events. Javac may interleave phases (f.e. parse files from source path
+     * while attributing) and may report the same phase for a batch of compilation units at once, each phase is
+     * considered active while there are unfinished events of its kind and time is charged to the most recently
+     * activated one
+     */
+    public static class CompilerListener implements TaskListener, AutoCloseable {
+
+        private final Map<TaskEvent.Kind, Integer> pending = new EnumMap<>(TaskEvent.Kind.class);
+        private final Deque<TaskEvent.Kind> active = new ArrayDeque<>();
+        private final Set<TaskEvent.Kind> entered = EnumSet.noneOf(TaskEvent.Kind.class);
+        /**
+         * Source file of the most recent event of a given kind, per-file costs are charged to it
+         */
+        private final Map<TaskEvent.Kind, JavaFileObject> files = new EnumMap<>(TaskEvent.Kind.class);
+        private Snapshot checkpoint;
+
+        private CompilerListener() {
+        }
+
+        @Override
+        public void started(TaskEvent e) {
+            charge();
+            if (e.getSourceFile() != null) {
+                files.put(e.getKind(), e.getSourceFile());
+            }
+            if (pending.merge(e.getKind(), 1, Integer::sum) == 1) {
+                active.push(e.getKind());
+                entered.remove(e.getKind());
+            }
+        }
+
+        @Override
+        public void finished(TaskEvent e) {
+            charge();
+            Integer count = pending.get(e.getKind());
+            if (count == null) {
+                return;
+            }
+            if (count == 1) {
+                pending.remove(e.getKind());
+                active.remove(e.getKind());
+            } else {
+                pending.put(e.getKind(), count - 1);
+            }
+        }
+
+        /**
+         * Charges time passed since the last event to the phase still in progress. In attribute-only mode javac
+         * doesn't report the end of attribution, so listener should be closed once compilation is done
+         */
+        @Override
+        public void close() {
+            charge();
+            pending.clear();
+            active.clear();
+        }
+
+        /**
+         * Charges time passed since last event to the most recently activated phase
+         */
+        private void charge() {
+            Snapshot now = new Snapshot();
+            TaskEvent.Kind kind = active.peek();
+            if (kind != null) {
+                add(getPhaseName(kind), checkpoint, now, entered.add(kind));
+                JavaFileObject file = files.get(kind);
+                if (file != null) {
+                    long nanos = now.wall - checkpoint.wall;
+                    switch (kind) {
+                        case PARSE:
+                            file(file.getName()).addParse(nanos);
+                            break;
+                        case ANALYZE:
+                            file(file.getName()).addAttribute(nanos);
+                            break;
+                    }
+                }
+            }
+            checkpoint = now;
+        }
+
+        private static String getPhaseName(TaskEvent.Kind kind) {
+            switch (kind) {
+                case ANALYZE:
+                    return "attribute";
+                default:
+                    return kind.name().toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+
+    /**
+     * Point-in-time values of current thread's counters
+     */
+    private static class Snapshot {
+
+        private final long wall;
+        private final long cpu;
+        private final long allocated;
+
+        private Snapshot() {
+            wall = System.nanoTime();
+            cpu = CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+            allocated = ALLOCATED_BYTES_SUPPORTED ?
+                    ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(
+                            Thread.currentThread().getId()) :
+                    0;
+        }
+    }
+
+    /**
+     * Accumulated metrics of a phase
+     */
+    static class Phase {
+
+        String name;
+        int count;
+        long wallMillis;
+        long cpuMillis;
+        long allocatedBytes;
+
+        transient long wallNanos;
+        transient long cpuNanos;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Accumulated costs of a single source file: time spent by javac to parse and attribute it (wall time), time spent
+     * by tree scanner, and emitted definitions and references. Duplicates are defs and refs that were found by
+     * scanner more than once and dropped
+     */
+    public static class FileCost {
+
+        String file;
+        long sourceChars;
+        long parseMillis;
+        long attributeMillis;
+        long scanMillis;
+        int defs;
+        int refs;
+        int duplicateDefs;
+        int duplicateRefs;
+        double duplicateRate;
+
+        private transient long parseNanos;
+        private transient long attributeNanos;
+        private transient long scanNanos;
+
+        private FileCost(String file) {
+            this.file = file;
+        }
+
+        private synchronized void addParse(long nanos) {
+            parseNanos += nanos;
+        }
+
+        private synchronized void addAttribute(long nanos) {
+            attributeNanos += nanos;
+        }
+
+        /**
+         * Records tree scanner run
+         *
+         * @param nanos         wall time spent
+         * @param sourceChars   source file size in characters
+         * @param defs          number of emitted definitions
+         * @param refs          number of emitted references
+         * @param duplicateDefs number of dropped duplicate definitions
+         * @param duplicateRefs number of dropped duplicate references
+         */
+        public synchronized void addScan(long nanos,
+                                         long sourceChars,
+                                         int defs,
+                                         int refs,
+                                         int duplicateDefs,
+                                         int duplicateRefs) {
+            this.scanNanos += nanos;
+            this.sourceChars = sourceChars;
+            this.defs += defs;
+            this.refs += refs;
+            this.duplicateDefs += duplicateDefs;
+            this.duplicateRefs += duplicateRefs;
+        }
+
+        private synchronized long getTotalNanos() {
+            return parseNanos + attributeNanos + scanNanos;
+        }
+
+        /**
+         * Updates serializable fields from accumulated values
+         */
+        private synchronized void update() {
+            parseMillis = TimeUnit.NANOSECONDS.toMillis(parseNanos);
+            attributeMillis = TimeUnit.NANOSECONDS.toMillis(attributeNanos);
+            scanMillis = TimeUnit.NANOSECONDS.toMillis(scanNanos);
+            int found = defs + refs + duplicateDefs + duplicateRefs;
+            duplicateRate = found == 0 ? 0 : (double) (duplicateDefs + duplicateRefs) / found;
+        }
+    }
+
+    /**
+     * Metrics file content
+     */
+    static class Report {
+        String command;
+        long wallMillis;
+        long cpuMillis;
+        List<Phase> phases;
+        List<FileCost> slowestFiles;
+    }
+
+    /**
+     * Metrics options shared by commands
+     */
+    public static class Options {
+
+        @Parameter(names = {"--metrics"}, description = "Write per-phase timing and allocation metrics as JSON to a given file")
+        String file;
+
+        @Parameter(names = {"--metrics-top-files"}, description = "Number of the slowest source files to report")
+        int topFiles = 10;
+    }
+}
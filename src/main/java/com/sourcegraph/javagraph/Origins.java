@@ -10,7 +10,10 @@ import javax.tools.JavaFileObject;
  */
 public class Origins {
 
-    private static JavaFileObject lastElementObject;
+    /**
+     * Last resolved java file object, kept per thread because units may be graphed concurrently
+     */
+    private static final ThreadLocal<JavaFileObject> lastElementObject = new ThreadLocal<>();
 
     /**
      * resolves java file object for a given java program element
@@ -25,7 +28,7 @@ public class Origins {
             case ANNOTATION_TYPE:
                 return forClass((ClassSymbol) e);
             case PACKAGE:
-                return lastElementObject;
+                return lastElementObject.get();
             default:
                 return forElement(e.getEnclosingElement());
         }
@@ -39,8 +42,9 @@ public class Origins {
     public static JavaFileObject forClass(ClassSymbol s) {
         // alexsaveliev: we keeping last resolved java file object to use it when requested resolution of package's
         // java file object, because we can't reach forElement(package) without reaching forClass() first
-        lastElementObject = s.classfile == null ? s.sourcefile : s.classfile;
-        return lastElementObject;
+        JavaFileObject ret = s.classfile == null ? s.sourcefile : s.classfile;
+        lastElementObject.set(ret);
+        return ret;
     }
 
 }
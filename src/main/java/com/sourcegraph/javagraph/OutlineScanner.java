@@ -0,0 +1,652 @@
+package com.sourcegraph.javagraph;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.tree.JCTree;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Scans syntax trees produced by parser (without attribution) and emits definitions of types, methods, constructors,
+ * and fields along with their definition references. Definition paths follow {@link ElementPath}, parameter types of
+ * methods are resolved the same way javac would print them, using imports, types declared in graphed sources, and
+ * classes listed in class path JAR files. Method bodies and initializers are visited only to find local and anonymous
+ * classes, local variables and parameters are not emitted
+ */
+class OutlineScanner extends TreePathScanner<Void, Void> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutlineScanner.class);
+
+    private static final String JAVA_LANG = "java.lang";
+
+    private final GraphWriter emit;
+    private final Trees trees;
+    private final SourcePositions srcPos;
+
+    /**
+     * Package name =&gt; simple names of top-level types declared in graphed sources
+     */
+    private final Map<String, Set<String>> sourceTypes;
+
+    /**
+     * Classes provided by boot class path and class path entries
+     */
+    private final ClassPathIndex.Classes classPath;
+
+    private final Set<DefKey> seenDefs = new HashSet<>();
+
+    /**
+     * Number of emitted and dropped (already seen) definitions and references
+     */
+    int defs;
+    int refs;
+    int duplicateDefs;
+
+    private CompilationUnitTree compilationUnit;
+    private URI origin;
+    private String pkg;
+    private Spans spans;
+
+    /**
+     * Simple name =&gt; qualified name of single-type imports of current compilation unit
+     */
+    private final Map<String, String> imports = new HashMap<>();
+
+    /**
+     * Simple name =&gt; qualified name of single static imports of current compilation unit, they may denote types
+     */
+    private final Map<String, String> staticImports = new HashMap<>();
+
+    /**
+     * Packages and types imported on demand (including static imports) by current compilation unit
+     */
+    private final List<String> onDemandImports = new ArrayList<>();
+
+    /**
+     * Types being visited, innermost first
+     */
+    private final Deque<Scope> scopes = new ArrayDeque<>();
+
+    /**
+     * Constructs new scanner
+     * @param emit graph writer that will process all defs encountered
+     * @param trees trees object
+     * @param sourceTypes types declared in graphed sources, see {@link #indexTypes(Iterable)}
+     * @param classPath classes provided by boot class path and class path entries
+     */
+    OutlineScanner(GraphWriter emit,
+                   Trees trees,
+                   Map<String, Set<String>> sourceTypes,
+                   ClassPathIndex.Classes classPath) {
+        this.emit = emit;
+        this.trees = trees;
+        this.srcPos = trees.getSourcePositions();
+        this.sourceTypes = sourceTypes;
+        this.classPath = classPath;
+    }
+
+    /**
+     * @param units parsed compilation units
+     * @return package name =&gt; names of types declared in given compilation units relative to package,
+     * f.e. Outer and Outer.Inner
+     */
+    static Map<String, Set<String>> indexTypes(Iterable<? extends CompilationUnitTree> units) {
+        Map<String, Set<String>> ret = new HashMap<>();
+        for (CompilationUnitTree unit : units) {
+            String pkg = unit.getPackageName() == null ? StringUtils.EMPTY : unit.getPackageName().toString();
+            Set<String> names = ret.computeIfAbsent(pkg, k -> new HashSet<>());
+            for (Tree decl : unit.getTypeDecls()) {
+                if (decl instanceof ClassTree) {
+                    indexType((ClassTree) decl, StringUtils.EMPTY, names);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Adds name of a given type and its member types to index
+     * @param node type node
+     * @param prefix name of enclosing type followed by dot or empty string for top-level types
+     * @param names names of types declared in current package
+     */
+    private static void indexType(ClassTree node, String prefix, Set<String> names) {
+        String name = prefix + node.getSimpleName();
+        names.add(name);
+        for (Tree member : node.getMembers()) {
+            if (member instanceof ClassTree) {
+                indexType((ClassTree) member, name + '.', names);
+            }
+        }
+    }
+
+    @Override
+    public Void visitCompilationUnit(CompilationUnitTree node, Void p) {
+        // ElementPath produces no paths for elements of unnamed package
+        if (node.getPackageName() == null) {
+            return null;
+        }
+        compilationUnit = node;
+        origin = node.getSourceFile().toUri();
+        pkg = node.getPackageName().toString();
+        spans = new Spans(node, trees, new Stack<>());
+        imports.clear();
+        staticImports.clear();
+        onDemandImports.clear();
+        for (ImportTree importTree : node.getImports()) {
+            if (!(importTree.getQualifiedIdentifier() instanceof MemberSelectTree)) {
+                continue;
+            }
+            MemberSelectTree name = (MemberSelectTree) importTree.getQualifiedIdentifier();
+            if (name.getIdentifier().contentEquals("*")) {
+                onDemandImports.add(name.getExpression().toString());
+            } else if (importTree.isStatic()) {
+                staticImports.put(name.getIdentifier().toString(), name.toString());
+            } else {
+                imports.put(name.getIdentifier().toString(), name.toString());
+            }
+        }
+        for (Tree decl : node.getTypeDecls()) {
+            scan(decl, p);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitClass(ClassTree node, Void p) {
+        String name = node.getSimpleName().toString();
+        Scope outer = scopes.peek();
+        Scope scope = new Scope();
+        scope.parentPath = outer == null ? pkg : outer.path;
+        scope.interfaceType = node.getKind() == Tree.Kind.INTERFACE || node.getKind() == Tree.Kind.ANNOTATION_TYPE;
+        List<String> typeVariables = new ArrayList<>();
+        for (TypeParameterTree typeParameter : node.getTypeParameters()) {
+            typeVariables.add(typeParameter.getName().toString());
+        }
+        scope.typeVariables.addAll(typeVariables);
+        String typeExpr;
+        if (name.isEmpty()) {
+            String fileBasename = new File(compilationUnit.getSourceFile().getName()).getName().
+                    replace(".java", StringUtils.EMPTY);
+            scope.qualifiedName = StringUtils.EMPTY;
+            scope.path = scope.parentPath + ".anon-p-" + fileBasename + '-' +
+                    srcPos.getStartPosition(compilationUnit, node) + ":type";
+            Tree parent = getCurrentPath().getParentPath().getLeaf();
+            typeExpr = parent instanceof NewClassTree ?
+                    "<anonymous " + resolveType(((NewClassTree) parent).getIdentifier(), Collections.emptySet()) + '>' :
+                    null;
+        } else {
+            // javac prints local classes by their simple names
+            scope.qualifiedName = outer == null ? pkg + '.' + name :
+                    outer.local ? name : outer.qualifiedName + '.' + name;
+            scope.path = scope.parentPath + '.' + name + ":type";
+            typeExpr = outer == null || outer.local ? scope.qualifiedName : outer.memberTypes.get(name);
+        }
+        if (!typeVariables.isEmpty()) {
+            typeExpr += '<' + StringUtils.join(typeVariables, ',') + '>';
+        }
+        // supertypes are resolved in enclosing scope, only their member types are of interest
+        List<Tree> supertypes = new ArrayList<>(node.getImplementsClause());
+        if (node.getExtendsClause() != null) {
+            supertypes.add(0, node.getExtendsClause());
+        }
+        for (Tree supertype : supertypes) {
+            if (supertype instanceof ParameterizedTypeTree) {
+                supertype = ((ParameterizedTypeTree) supertype).getType();
+            }
+            scope.supertypes.add(resolveType(supertype, Collections.emptySet()));
+        }
+        boolean hasConstructor = false;
+        for (Tree member : node.getMembers()) {
+            if (member instanceof ClassTree) {
+                ClassTree memberType = (ClassTree) member;
+                String memberName = memberType.getSimpleName().toString();
+                // inner classes of generic types are printed with type arguments of enclosing type
+                boolean inner = memberType.getKind() == Tree.Kind.CLASS && !scope.interfaceType &&
+                        !memberType.getModifiers().getFlags().contains(Modifier.STATIC);
+                scope.memberTypes.put(memberName, (inner && typeExpr != null && typeExpr.indexOf('<') >= 0 ?
+                        typeExpr : scope.qualifiedName) + '.' + memberName);
+            } else if (member instanceof MethodTree && isConstructor((MethodTree) member)) {
+                hasConstructor = true;
+            }
+        }
+
+        int[] nameSpan = {0, 0};
+        if (!name.isEmpty()) {
+            nameSpan = spans.name(node);
+            emitRef(nameSpan, scope.path, true);
+        }
+        Set<Modifier> modifiers = EnumSet.noneOf(Modifier.class);
+        modifiers.addAll(node.getModifiers().getFlags());
+        if (name.isEmpty() && outer != null && outer.staticContext) {
+            // javac marks anonymous classes declared in static context as static ones
+            modifiers.add(Modifier.STATIC);
+        } else if (outer != null && outer.interfaceType) {
+            // javac marks member types of interfaces as public static ones
+            modifiers.add(Modifier.PUBLIC);
+            modifiers.add(Modifier.STATIC);
+        }
+        emitDef(scope.path,
+                name,
+                node.getKind().toString(),
+                nameSpan,
+                treeSpan(node),
+                modifiers,
+                typeExpr,
+                trees.getDocComment(getCurrentPath()));
+
+        scopes.push(scope);
+        try {
+            for (Tree member : node.getMembers()) {
+                if (member instanceof ClassTree || member instanceof MethodTree || member instanceof VariableTree) {
+                    scan(member, p);
+                }
+            }
+            // javac adds default constructor with class' access modifiers (private ones for enums)
+            if (!hasConstructor && !name.isEmpty() &&
+                    (node.getKind() == Tree.Kind.CLASS || node.getKind() == Tree.Kind.ENUM)) {
+                Set<Modifier> access = EnumSet.of(Modifier.PUBLIC, Modifier.PROTECTED, Modifier.PRIVATE);
+                if (node.getKind() == Tree.Kind.ENUM) {
+                    access = EnumSet.of(Modifier.PRIVATE);
+                } else {
+                    access.retainAll(node.getModifiers().getFlags());
+                }
+                emitDef(scope.parentPath + '.' + name + "/:init",
+                        "<init>",
+                        ElementKind.CONSTRUCTOR.toString(),
+                        nameSpan,
+                        nameSpan,
+                        access,
+                        "()void",
+                        null);
+            }
+        } finally {
+            scopes.pop();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMethod(MethodTree node, Void p) {
+        Scope scope = scopes.peek();
+        Set<String> typeVariables = new LinkedHashSet<>();
+        for (TypeParameterTree typeParameter : node.getTypeParameters()) {
+            typeVariables.add(typeParameter.getName().toString());
+        }
+        List<String> params = new ArrayList<>();
+        for (VariableTree param : node.getParameters()) {
+            params.add(resolveType(param.getType(), typeVariables));
+        }
+        String suffix = params.isEmpty() ? StringUtils.EMPTY :
+                ':' + params.stream().map(param -> param.replace('.', '$')).collect(Collectors.joining(":"));
+
+        boolean isCtor = isConstructor(node);
+        String path;
+        int[] nameSpan;
+        if (isCtor) {
+            String className = scope.qualifiedName.substring(scope.qualifiedName.lastIndexOf('.') + 1);
+            path = scope.parentPath + '.' + className + "/:init" + suffix;
+            nameSpan = spans.name(className, node);
+        } else {
+            path = scope.path + '.' + node.getName() + suffix;
+            nameSpan = spans.name(node.getName().toString(), node);
+        }
+        // method types are printed as <T>(params)result
+        String typeExpr = (typeVariables.isEmpty() ? StringUtils.EMPTY : '<' + StringUtils.join(typeVariables, ',') + '>') +
+                '(' + StringUtils.join(params, ',') + ')' +
+                (node.getReturnType() == null ? "void" : resolveType(node.getReturnType(), typeVariables));
+        emitDef(path,
+                node.getName().toString(),
+                (isCtor ? ElementKind.CONSTRUCTOR : ElementKind.METHOD).toString(),
+                nameSpan,
+                treeSpan(node),
+                node.getModifiers().getFlags(),
+                typeExpr,
+                trees.getDocComment(getCurrentPath()));
+        emitRef(nameSpan, path, true);
+        scanLocalClasses(node.getBody(),
+                path,
+                typeVariables,
+                node.getModifiers().getFlags().contains(Modifier.STATIC));
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(VariableTree node, Void p) {
+        boolean isEnumConstant = (((JCTree.JCVariableDecl) node).mods.flags & Flags.ENUM) != 0;
+        String path = scopes.peek().path + '.' + node.getName();
+        int[] nameSpan = spans.name(node);
+        emitDef(path,
+                node.getName().toString(),
+                (isEnumConstant ? ElementKind.ENUM_CONSTANT : ElementKind.FIELD).toString(),
+                nameSpan,
+                treeSpan(node),
+                node.getModifiers().getFlags(),
+                resolveType(node.getType(), Collections.emptySet()),
+                trees.getDocComment(getCurrentPath()));
+        emitRef(nameSpan, path, true);
+        // interface fields are implicitly static
+        scanLocalClasses(node.getInitializer(),
+                path,
+                Collections.emptySet(),
+                node.getModifiers().getFlags().contains(Modifier.STATIC) || scopes.peek().interfaceType);
+        return null;
+    }
+
+    /**
+     * Emits local and anonymous classes declared in method body or field initializer
+     * @param node method body or field initializer
+     * @param parentPath definition path of method or field
+     * @param typeVariables type variables declared by method
+     * @param staticContext true if method or field is static
+     */
+    private void scanLocalClasses(Tree node, String parentPath, Set<String> typeVariables, boolean staticContext) {
+        if (node == null) {
+            return;
+        }
+        Scope scope = new Scope();
+        scope.path = parentPath;
+        scope.local = true;
+        scope.staticContext = staticContext;
+        scope.typeVariables.addAll(typeVariables);
+        scopes.push(scope);
+        try {
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitClass(ClassTree classTree, Void p) {
+                    OutlineScanner.this.scan(getCurrentPath(), p);
+                    return null;
+                }
+            }.scan(new TreePath(getCurrentPath(), node), null);
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    /**
+     * Emits definition
+     * @param path definition path
+     * @param name definition name
+     * @param kind java element kind
+     * @param nameSpan name span
+     * @param defSpan definition span
+     * @param modifiers definition modifiers
+     * @param typeExpr type expression
+     * @param doc javadoc
+     */
+    private void emitDef(String path,
+                         String name,
+                         String kind,
+                         int[] nameSpan,
+                         int[] defSpan,
+                         Set<Modifier> modifiers,
+                         String typeExpr,
+                         String doc) {
+        if (defSpan == null) {
+            return;
+        }
+        Def s = new Def();
+        s.defKey = new DefKey(origin, path);
+        if (!seenDefs.add(s.defKey)) {
+            duplicateDefs++;
+            return;
+        }
+        defs++;
+        s.name = name;
+        s.kind = kind;
+        if (nameSpan != null) {
+            s.identStart = nameSpan[0];
+            s.identEnd = nameSpan[1];
+        }
+        s.defStart = defSpan[0];
+        s.defEnd = defSpan[1];
+        s.file = compilationUnit.getSourceFile().getName();
+        s.pkg = pkg;
+        s.modifiers = modifiers.stream().map(Modifier::toString).collect(Collectors.toList());
+        s.typeExpr = typeExpr;
+        s.doc = doc;
+        try {
+            emit.writeDef(s);
+        } catch (IOException e) {
+            LOGGER.warn("I/O error", e);
+        }
+    }
+
+    /**
+     * Emits definition reference
+     * @param span name span
+     * @param path definition path
+     * @param def true if reference is a definition as well
+     */
+    private void emitRef(int[] span, String path, boolean def) {
+        if (span == null) {
+            return;
+        }
+        Ref r = new Ref();
+        r.defKey = new DefKey(origin, path);
+        r.file = compilationUnit.getSourceFile().getName();
+        r.start = span[0];
+        r.end = span[1];
+        r.def = def;
+        refs++;
+        try {
+            emit.writeRef(r);
+        } catch (IOException e) {
+            LOGGER.warn("I/O error", e);
+        }
+    }
+
+    /**
+     * @param node type tree
+     * @param typeVariables type variables declared by current method
+     * @return type name as javac prints attributed type, f.e. java.util.List&lt;java.lang.String&gt;
+     */
+    private String resolveType(Tree node, Set<String> typeVariables) {
+        switch (node.getKind()) {
+            case PRIMITIVE_TYPE:
+                return ((PrimitiveTypeTree) node).getPrimitiveTypeKind().toString().toLowerCase();
+            case ARRAY_TYPE:
+                return resolveType(((ArrayTypeTree) node).getType(), typeVariables) + "[]";
+            case PARAMETERIZED_TYPE:
+                ParameterizedTypeTree parameterized = (ParameterizedTypeTree) node;
+                return resolveType(parameterized.getType(), typeVariables) + '<' +
+                        parameterized.getTypeArguments().stream().
+                                map(argument -> resolveType(argument, typeVariables)).
+                                collect(Collectors.joining(",")) + '>';
+            case UNBOUNDED_WILDCARD:
+                return "?";
+            case EXTENDS_WILDCARD:
+                return "? extends " + resolveType(((WildcardTree) node).getBound(), typeVariables);
+            case SUPER_WILDCARD:
+                return "? super " + resolveType(((WildcardTree) node).getBound(), typeVariables);
+            case ANNOTATED_TYPE:
+                return resolveType(((AnnotatedTypeTree) node).getUnderlyingType(), typeVariables);
+            case IDENTIFIER:
+                return resolveSimpleName(((IdentifierTree) node).getName().toString(), typeVariables);
+            case MEMBER_SELECT:
+                MemberSelectTree select = (MemberSelectTree) node;
+                ExpressionTree qualifier = select.getExpression();
+                // Outer.Inner refers to member type of a visible type, otherwise name is fully qualified
+                if (qualifier.getKind() == Tree.Kind.IDENTIFIER &&
+                        Character.isUpperCase(((IdentifierTree) qualifier).getName().charAt(0))) {
+                    String resolved = resolveSimpleName(((IdentifierTree) qualifier).getName().toString(),
+                            Collections.emptySet());
+                    if (resolved.indexOf('.') >= 0) {
+                        return resolved + '.' + select.getIdentifier();
+                    }
+                } else if (qualifier.getKind() == Tree.Kind.MEMBER_SELECT ||
+                        qualifier.getKind() == Tree.Kind.PARAMETERIZED_TYPE) {
+                    return resolveType(qualifier, typeVariables) + '.' + select.getIdentifier();
+                }
+                return node.toString();
+            default:
+                return node.toString();
+        }
+    }
+
+    /**
+     * Resolves simple type name the way javac does: type variables, member types of enclosing types (including ones
+     * declared by their direct supertypes), single-type imports, types of current package, types imported on demand,
+     * java.lang types
+     * @param name simple name
+     * @param typeVariables type variables declared by current method
+     * @return qualified name if type was found, simple name otherwise
+     */
+    private String resolveSimpleName(String name, Set<String> typeVariables) {
+        if (typeVariables.contains(name)) {
+            return name;
+        }
+        for (Scope scope : scopes) {
+            if (scope.typeVariables.contains(name)) {
+                return name;
+            }
+            String memberType = scope.memberTypes.get(name);
+            if (memberType != null) {
+                return memberType;
+            }
+        }
+        // unlike javac, inherited member types are looked up after declared ones, because class path index can't
+        // tell private member types (which are not inherited) from others
+        for (Scope scope : scopes) {
+            for (String supertype : scope.supertypes) {
+                String memberType = supertype + '.' + name;
+                if (isKnownType(memberType)) {
+                    return memberType;
+                }
+            }
+        }
+        String imported = imports.get(name);
+        if (imported != null) {
+            return imported;
+        }
+        imported = staticImports.get(name);
+        if (imported != null && isKnownType(imported)) {
+            return imported;
+        }
+        if (isSourceType(pkg, name)) {
+            return pkg + '.' + name;
+        }
+        String candidate = null;
+        for (String onDemandImport : onDemandImports) {
+            if (isKnownType(onDemandImport + '.' + name)) {
+                return onDemandImport + '.' + name;
+            }
+            if (!sourceTypes.containsKey(onDemandImport)) {
+                candidate = candidate == null ? onDemandImport : StringUtils.EMPTY;
+            }
+        }
+        if (classPath.contains(JAVA_LANG + '.' + name)) {
+            return JAVA_LANG + '.' + name;
+        }
+        // the only on-demand import of a package not declared in sources most probably provides the type
+        if (!StringUtils.isEmpty(candidate)) {
+            return candidate + '.' + name;
+        }
+        return name;
+    }
+
+    /**
+     * @param name qualified type name
+     * @return true if type is declared in graphed sources or provided by class path
+     */
+    private boolean isKnownType(String name) {
+        return isSourceType(name) || classPath.contains(name);
+    }
+
+    /**
+     * @param pkg package name
+     * @param name type name relative to package
+     * @return true if type is declared in graphed sources
+     */
+    private boolean isSourceType(String pkg, String name) {
+        Set<String> names = sourceTypes.get(pkg);
+        return names != null && names.contains(name);
+    }
+
+    /**
+     * @param name qualified type name
+     * @return true if type is declared in graphed sources
+     */
+    private boolean isSourceType(String name) {
+        for (int pos = name.indexOf('.'); pos >= 0; pos = name.indexOf('.', pos + 1)) {
+            if (isSourceType(name.substring(0, pos), name.substring(pos + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param node method node
+     * @return true if method is a constructor
+     */
+    private static boolean isConstructor(MethodTree node) {
+        return node.getName().contentEquals("<init>");
+    }
+
+    /**
+     * @param node tree node
+     * @return node span in current compilation unit
+     */
+    private int[] treeSpan(Tree node) {
+        int[] span = new int[]{
+                (int) srcPos.getStartPosition(compilationUnit, node),
+                (int) srcPos.getEndPosition(compilationUnit, node)};
+        if (span[1] == Diagnostic.NOPOS)
+            return null;
+        return span;
+    }
+
+    /**
+     * Type, method or field being visited
+     */
+    private static class Scope {
+        /**
+         * Qualified name, f.e. com.example.Outer.Inner
+         */
+        String qualifiedName;
+        /**
+         * Definition path, f.e. com.example.Outer:type.Inner:type
+         */
+        String path;
+        /**
+         * Definition path of enclosing type or package
+         */
+        String parentPath;
+        /**
+         * True if scope is a method or field which local and anonymous classes are visited
+         */
+        boolean local;
+        /**
+         * True if scope is a static method or field
+         */
+        boolean staticContext;
+        /**
+         * True if scope is an interface or annotation type
+         */
+        boolean interfaceType;
+        final Set<String> typeVariables = new HashSet<>();
+        /**
+         * Qualified names of direct supertypes
+         */
+        final List<String> supertypes = new ArrayList<>();
+        /**
+         * Simple name =&gt; qualified name of member types
+         */
+        final Map<String, String> memberTypes = new HashMap<>();
+    }
+}
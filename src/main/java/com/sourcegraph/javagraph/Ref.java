@@ -1,9 +1,13 @@
 package com.sourcegraph.javagraph;
 
-import com.google.gson.*;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.apache.commons.lang3.StringUtils;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Reference to a definition object
@@ -94,30 +98,46 @@ public class Ref {
     }
 
     /**
-     * JSON serialization rules for reference objects
+     * JSON serialization rules for reference objects. References are written directly to JSON stream, relative
+     * paths of source files are computed once per file
      */
-    static class JSONSerializer implements JsonSerializer<Ref> {
+    static class JSONSerializer extends TypeAdapter<Ref> {
+
+        private final Map<String, String> files = new HashMap<>();
 
         @Override
-        public JsonElement serialize(Ref ref, Type arg1, JsonSerializationContext arg2) {
-            JsonObject object = new JsonObject();
+        public void write(JsonWriter out, Ref ref) throws IOException {
+            if (ref == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
 
             if (ref.defKey.getOrigin() != null) {
                 // Add for easier debugging.
-                object.addProperty("_JavaOrigin", ref.defKey.getOrigin().toString());
+                out.name("_JavaOrigin").value(ref.defKey.getOrigin().toString());
             }
 
-            if (ref.defRepo != null) object.add("DefRepo", new JsonPrimitive(ref.defRepo));
-            if (ref.defUnitType != null) object.add("DefUnitType", new JsonPrimitive(ref.defUnitType));
-            if (ref.defUnit != null) object.add("DefUnit", new JsonPrimitive(ref.defUnit));
-            object.add("DefPath", new JsonPrimitive(ref.defKey.formatPath()));
+            if (ref.defRepo != null) out.name("DefRepo").value(ref.defRepo);
+            if (ref.defUnitType != null) out.name("DefUnitType").value(ref.defUnitType);
+            if (ref.defUnit != null) out.name("DefUnit").value(ref.defUnit);
+            out.name("DefPath").value(ref.defKey.formatPath());
 
-            object.add("File", new JsonPrimitive(PathUtil.relativizeCwd(ref.file)));
-            object.add("Start", new JsonPrimitive(ref.start));
-            object.add("End", new JsonPrimitive(ref.end));
-            object.add("Def", new JsonPrimitive(ref.def));
+            out.name("File").value(files.computeIfAbsent(ref.file, PathUtil::relativizeCwd));
+            out.name("Start").value(ref.start);
+            out.name("End").value(ref.end);
+            out.name("Def").value(ref.def);
 
-            return object;
+            out.endObject();
+        }
+
+        /**
+         * References are only written, value is skipped
+         */
+        @Override
+        public Ref read(JsonReader in) throws IOException {
+            in.skipValue();
+            return null;
         }
 
     }
@@ -217,6 +217,7 @@ public class Resolver {
      * @return The DepResolution Object. Error will be non-null if a DepResolution
      * could not be performed.
      */
+    @SuppressWarnings("try")
     public DepResolution resolveRawDep(RawDependency d) {
 
         String groupId = d.groupID;
@@ -271,7 +272,7 @@ public class Resolver {
                 + d.version + '/' + d.artifactID + '-' + d.version + ".pom";
             LOGGER.debug("Trying to resolve dependency {} - {}", d, url);
 
-            try {
+            try (Metrics.Timer ignored = Metrics.start("fetch " + urlBase)) {
                 URLConnection urlConnection = new URL(url).openConnection();
                 if (repo.getAuthentication() != null) {
                     AuthenticationContext context = AuthenticationContext.forRepository(repositorySystemSession, repo);
@@ -331,13 +332,27 @@ public class Resolver {
         if (!origin.getScheme().equals("file")) {
             return null;
         }
-        List<List<String>> sourceDirs = (List<List<String>>) unit.Data.get("SourcePath");
-        if (sourceDirs == null) {
+        File file = new File(origin);
+        ResolvedTarget target = resolveFileOrigin(file, (List<List<String>>) unit.Data.get("SourcePath"));
+        if (target == null) {
+            // class files of upstream units compiled by graph-all
+            target = resolveFileOrigin(file, (List<List<String>>) unit.Data.get(SourceUnit.STUB_PATH));
+        }
+        return target;
+    }
+
+    /**
+     * Resolves file to unit which directory contains it
+     * @param file file to resolve
+     * @param dirs list of (unit name, version, directory) elements
+     * @return resolved target or null if resolution failed
+     */
+    private static ResolvedTarget resolveFileOrigin(File file, List<List<String>> dirs) {
+        if (dirs == null) {
             return null;
         }
-        File file = new File(origin);
         File cwd = PathUtil.CWD.toFile();
-        for (List<String> dir : sourceDirs) {
+        for (List<String> dir : dirs) {
             File root = PathUtil.concat(cwd, dir.get(2));
             try {
                 if (root.isDirectory() && FileUtils.directoryContains(root, file)) {
@@ -7,9 +7,10 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.text.ParseException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -18,10 +19,11 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.ivy.core.module.id.ModuleRevisionId;
-import org.apache.ivy.plugins.report.XmlReportParser;
-
 import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,21 +31,213 @@ import org.slf4j.LoggerFactory;
 public class SbtProject {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SbtProject.class);
 
+	/**
+	 * Default sbt command
+	 */
+	public static final String DEFAULT_SBT_COMMAND = "/usr/bin/sbt";
+
+	/**
+	 * sbt script which defines "srclibDump" command, the command writes names, sources and dependencies of all
+	 * projects into a single JSON file
+	 */
+	private static final String DUMP_SCRIPT_RESOURCE = "/srclib-dump.sbt";
+
+	private static final String DUMP_SCRIPT_FILE = "fossa-srclib-dump.sbt";
+
 	public static Collection<SourceUnit> findAllSourceUnits() throws IOException {
+		return findAllSourceUnits(DEFAULT_SBT_COMMAND, false);
+	}
+
+	/**
+	 * @param sbtCommand  sbt executable to use
+	 * @param interactive if true, every project is queried in the interactive sbt session one command at a time
+	 *                    instead of dumping all projects with a single batch invocation
+	 * @return all source units found
+	 * @throws IOException
+	 */
+	public static Collection<SourceUnit> findAllSourceUnits(String sbtCommand, boolean interactive) throws IOException {
 		Collection<SourceUnit> units = new ArrayList<>();
 		// TODO: parses all sorts of bogus test input in some projects -- hard code
 		// top-level build.sbt instead.
 		Collection<Path> sbtFiles = ScanUtil.findMatchingFiles("build.sbt");
 		if (sbtFiles.size() > 0) {
-			addDepsPluginToProject();
-			units.addAll(processSourceUnit(sbtFiles.iterator().next()));
+			Path path = sbtFiles.iterator().next();
+			Collection<SourceUnit> batch = interactive ? null : processSourceUnitBatch(path, sbtCommand);
+			if (batch != null) {
+				units.addAll(batch);
+			} else {
+				addDepsPluginToProject();
+				units.addAll(processSourceUnit(path, sbtCommand));
+			}
 		}
 		return units;
 	}
 
-	private static Collection<SourceUnit> processSourceUnit(Path path) throws IOException {
+	/**
+	 * Collects all source units with a single sbt invocation which runs "srclibDump" command
+	 *
+	 * @param path       build.sbt file
+	 * @param sbtCommand sbt executable to use
+	 * @return source units found or null if sbt didn't produce dump file
+	 * @throws IOException
+	 */
+	static Collection<SourceUnit> processSourceUnitBatch(Path path, String sbtCommand) throws IOException {
+		File buildDir = path.toAbsolutePath().getParent().toFile();
+		File script = new File(buildDir, DUMP_SCRIPT_FILE);
+		File dump = File.createTempFile("srclib-sbt", ".json");
+		try {
+			try (InputStream is = SbtProject.class.getResourceAsStream(DUMP_SCRIPT_RESOURCE)) {
+				FileUtils.copyInputStreamToFile(is, script);
+			}
+			FileUtils.deleteQuietly(dump);
+
+			List<String> command = ImmutableList.of(sbtCommand, "-no-colors", "srclibDump " + dump.getAbsolutePath());
+			LOGGER.debug("Running {}", StringUtils.join(command, ' '));
+			Process process = new ProcessBuilder(command).directory(buildDir).redirectErrorStream(true).start();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+					StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					processSbtOutput(line);
+				}
+			} finally {
+				process.destroy();
+			}
+
+			if (!dump.isFile()) {
+				LOGGER.warn("sbt didn't produce project dump, falling back to interactive mode");
+				return null;
+			}
+			try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(dump),
+					StandardCharsets.UTF_8))) {
+				return readDump(path, reader);
+			} catch (IOException | IllegalStateException e) {
+				LOGGER.warn("Unable to read sbt project dump {}, falling back to interactive mode", dump, e);
+				return null;
+			}
+		} finally {
+			FileUtils.deleteQuietly(script);
+			FileUtils.deleteQuietly(dump);
+		}
+	}
+
+	/**
+	 * Reads project dump produced by "srclibDump" command. Mimics interactive mode: when there are multiple projects,
+	 * root project is skipped, projects aggregating other ones are skipped as well
+	 *
+	 * @param path   build.sbt file
+	 * @param reader JSON reader positioned at the beginning of dump
+	 * @return source units
+	 * @throws IOException
+	 */
+	private static Collection<SourceUnit> readDump(Path path, JsonReader reader) throws IOException {
+		Collection<DumpedProject> projects = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("projects")) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					projects.add(readProject(reader));
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		String origin = PathUtil.relativizeCwd(path.toAbsolutePath()).toString();
+		Collection<SourceUnit> sourceUnits = new ArrayList<>();
+		for (DumpedProject project : projects) {
+			if ((project.current && projects.size() > 1) || !project.aggregates.isEmpty()) {
+				LOGGER.debug("skipping aggregate project: {}", project.id);
+				continue;
+			}
+			SourceUnit unit = new SourceUnit();
+			unit.Name = project.name;
+			// Treat all Scala artifacts like Java artifacts so that the fetcher processes
+			// them.
+			unit.Type = "JavaArtifact";
+			unit.Files = project.sources;
+			for (String[] dependency : project.dependencies) {
+				RawDependency raw = new RawDependency(dependency[0], dependency[1], dependency[2], "compile", null,
+						origin);
+				raw.type = "ivy";
+				unit.Dependencies.add(raw);
+			}
+			unit.Dir = path.getParent().toString();
+			sourceUnits.add(unit);
+		}
+		return sourceUnits;
+	}
+
+	/**
+	 * Reads single project from dump
+	 */
+	private static DumpedProject readProject(JsonReader reader) throws IOException {
+		DumpedProject project = new DumpedProject();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "id":
+					project.id = reader.nextString();
+					break;
+				case "name":
+					project.name = reader.nextString();
+					break;
+				case "current":
+					project.current = reader.nextBoolean();
+					break;
+				case "aggregates":
+					readStrings(reader, project.aggregates);
+					break;
+				case "sources":
+					readStrings(reader, project.sources);
+					break;
+				case "dependencies":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						String[] dependency = new String[3];
+						reader.beginObject();
+						while (reader.hasNext()) {
+							switch (reader.nextName()) {
+								case "organization":
+									dependency[0] = reader.nextString();
+									break;
+								case "name":
+									dependency[1] = reader.nextString();
+									break;
+								case "revision":
+									dependency[2] = reader.nextString();
+									break;
+								default:
+									reader.skipValue();
+							}
+						}
+						reader.endObject();
+						project.dependencies.add(dependency);
+					}
+					reader.endArray();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return project;
+	}
+
+	private static void readStrings(JsonReader reader, Collection<String> target) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			target.add(reader.nextString());
+		}
+		reader.endArray();
+	}
+
+	private static Collection<SourceUnit> processSourceUnit(Path path, String sbtCommand) throws IOException {
 		// sbt startup is slow so we only invoke it once and parse output interactively.
-		Process process = new ProcessBuilder(ImmutableList.of("/usr/bin/sbt", "-no-colors"))
+		Process process = new ProcessBuilder(ImmutableList.of(sbtCommand, "-no-colors"))
 				.directory(path.getParent().toFile()).start();
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
 				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
@@ -83,6 +277,7 @@ public class SbtProject {
 				sourceUnits.addAll(processProject(path, project, reader, writer));
 			}
 			executeSbtCommand("exit", reader, writer);
+			IvyReport.saveCache();
 
 			return sourceUnits;
 		} finally {
@@ -138,16 +333,15 @@ public class SbtProject {
 				unit.Dependencies.addAll(getFlatDepList(path, reader, writer));
 				continue;
 			}
-			XmlReportParser ivyReport = new XmlReportParser();
+			List<String[]> revs;
 			try {
-				ivyReport.parse(currentIvyReportFile);
-			} catch (ParseException e) {
+				revs = IvyReport.getDependencies(currentIvyReportFile);
+			} catch (IOException e) {
 				LOGGER.warn(String.format("Error parsing ivy report file for project <%s>: %s", project, e.toString()));
 				continue;
 			}
-			ModuleRevisionId[] revs = ivyReport.getDependencyRevisionIds();
-			for(ModuleRevisionId rev : revs) {
-				RawDependency raw = new RawDependency(rev.getOrganisation(), rev.getName(), rev.getRevision(), "compile", null, PathUtil.relativizeCwd(path.toAbsolutePath()).toString());
+			for (String[] rev : revs) {
+				RawDependency raw = new RawDependency(rev[0], rev[1], rev[2], "compile", null, PathUtil.relativizeCwd(path.toAbsolutePath()).toString());
 				raw.type = "ivy";
 				unit.Dependencies.add(raw);	
 			}
@@ -186,32 +380,42 @@ public class SbtProject {
 		Collection<String> lines = new ArrayList<>();
 		String line;
 		while ((line = reader.readLine()) != null) {
-			LOGGER.debug("sbt output: {}", line);
 			if (line.equals("[info] ans: String = EOF")) {
 				break;
 			}
-			String prefix = "[error] ";
-			if (line.startsWith(prefix)) {
-				line = line.substring(prefix.length());
-				LOGGER.error(line);
-				continue;
-			}
-			prefix = "[warn] ";
-			if (line.startsWith(prefix)) {
-				line = line.substring(prefix.length());
-				LOGGER.warn(line);
-				continue;
-			}
-			prefix = "[info] ";
-			if (!line.startsWith(prefix)) {
-				continue;
+			line = processSbtOutput(line);
+			if (line != null) {
+				lines.add(line);
 			}
-			line = line.substring(prefix.length());
-			lines.add(line);
 		}
 		return lines;
 	}
 
+	/**
+	 * Emits error and warn messages to the logger
+	 *
+	 * @param line sbt output line
+	 * @return message if line is a message at info level, null otherwise
+	 */
+	private static String processSbtOutput(String line) {
+		LOGGER.debug("sbt output: {}", line);
+		String prefix = "[error] ";
+		if (line.startsWith(prefix)) {
+			LOGGER.error(line.substring(prefix.length()));
+			return null;
+		}
+		prefix = "[warn] ";
+		if (line.startsWith(prefix)) {
+			LOGGER.warn(line.substring(prefix.length()));
+			return null;
+		}
+		prefix = "[info] ";
+		if (!line.startsWith(prefix)) {
+			return null;
+		}
+		return line.substring(prefix.length());
+	}
+
 	/**
 	 * We add the dependency-graph custom plugin here:
 	 * https://github.com/jrudolph/sbt-dependency-graph Instead of adding globally
@@ -262,4 +466,16 @@ public class SbtProject {
 
 		return allDeps;
 	}
+
+	/**
+	 * Project as reported by "srclibDump" command
+	 */
+	private static class DumpedProject {
+		String id;
+		String name;
+		boolean current;
+		Collection<String> aggregates = new ArrayList<>();
+		List<String> sources = new ArrayList<>();
+		Collection<String[]> dependencies = new ArrayList<>();
+	}
 }
@@ -3,6 +3,7 @@ package com.sourcegraph.javagraph;
 import io.fossa.config.FossaConfig;
 
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -15,12 +16,18 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ScanCommand {
 
@@ -34,6 +41,24 @@ public class ScanCommand {
     @Parameter(names = {"--subdir"}, description = "The path of the current directory (in which the scanner is run), relative to the root directory of the repository being scanned (this is typically the root, \".\", as it is most useful to scan the entire repository)")
     String subdir;
 
+    @Parameter(names = {"--maven-lightweight-model"}, description = "Build trimmed effective Maven models (no profile activators, no validation)")
+    boolean mavenLightweightModel;
+
+    @Parameter(names = {"--sbt"}, description = "sbt command to use")
+    String sbtCommand = SbtProject.DEFAULT_SBT_COMMAND;
+
+    @Parameter(names = {"--sbt-interactive"}, description = "Query sbt projects one command at a time in the interactive session instead of dumping them all at once")
+    boolean sbtInteractive;
+
+    @Parameter(names = {"--skip-test-units"}, description = "Do not emit units made of test sources (NAME#test) and their test-scoped dependencies")
+    boolean skipTestUnits;
+
+    @ParametersDelegate
+    JSONUtil.Options output = new JSONUtil.Options();
+
+    @ParametersDelegate
+    Metrics.Options metrics = new Metrics.Options();
+
     public static final String JDK_TEST_REPO = "github.com/sgtest/java-jdk-sample";
     public static final String ANDROID_SDK_REPO = "android.googlesource.com/platform/frameworks/base";
     public static final String ANDROID_CORE_REPO = "android.googlesource.com/platform/libcore";
@@ -54,23 +79,69 @@ public class ScanCommand {
 
             // Scan for source units.
             List<SourceUnit> units = new ArrayList<>();
-            // Recursively find all Maven and Gradle projects.
-            LOGGER.info("Collecting Maven source units");
-            units.addAll(MavenProject.findAllSourceUnits(fossaConfig.getProfiles(), fossaConfig.getMavenArtifactRepositories()));
-            LOGGER.info("Collecting Gradle source units");
-            units.addAll(GradleProject.findAllSourceUnits(fossaConfig.getGradleBuildFile()));
-            LOGGER.info("Collecting Ant source units");
-            units.addAll(AntProject.findAllSourceUnits());
-            LOGGER.info("Collecting Sbt source units");
-            units.addAll(SbtProject.findAllSourceUnits());
+            // Recursively find all Maven, Gradle, Ant, and sbt projects. Build systems are independent from each
+            // other and mostly wait for external processes or I/O, so they are processed concurrently
+            Map<String, Callable<Collection<SourceUnit>>> detectors = new LinkedHashMap<>();
+            detectors.put("Maven", () -> MavenProject.findAllSourceUnits(fossaConfig.getProfiles(),
+                    fossaConfig.getMavenArtifactRepositories(),
+                    mavenLightweightModel));
+            detectors.put("Gradle", () -> GradleProject.findAllSourceUnits(fossaConfig.getGradleBuildFile()));
+            detectors.put("Ant", AntProject::findAllSourceUnits);
+            detectors.put("Sbt", () -> SbtProject.findAllSourceUnits(sbtCommand, sbtInteractive));
+            units.addAll(collectSourceUnits(detectors));
+            if (skipTestUnits) {
+                units.removeIf(SourceUnit::isTest);
+            }
             normalize(units);
-            JSONUtil.writeJSON(units);
+            JSONUtil.writeJSON(units, output);
+            Metrics.report("scan", metrics);
         } catch (Exception e) {
             LOGGER.error("Unexpected error occurred while collecting source units", e);
             System.exit(1);
         }
     }
 
+    /**
+     * Runs build system detectors concurrently using shared executor
+     *
+     * @param detectors map (build system name => detector), results are merged in map's order
+     * @return source units found by all detectors
+     * @throws Exception if any detector fails
+     */
+    @SuppressWarnings("try")
+    private static Collection<SourceUnit> collectSourceUnits(Map<String, Callable<Collection<SourceUnit>>> detectors)
+            throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(detectors.size());
+        try {
+            Map<String, Future<Collection<SourceUnit>>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, Callable<Collection<SourceUnit>>> detector : detectors.entrySet()) {
+                futures.put(detector.getKey(), executorService.submit(() -> {
+                    LOGGER.info("Collecting {} source units", detector.getKey());
+                    Collection<SourceUnit> units;
+                    try (Metrics.Timer ignored = Metrics.start(detector.getKey())) {
+                        units = detector.getValue().call();
+                    }
+                    LOGGER.info("Collected {} {} source units", units.size(), detector.getKey());
+                    return units;
+                }));
+            }
+            Collection<SourceUnit> ret = new ArrayList<>();
+            for (Future<Collection<SourceUnit>> future : futures.values()) {
+                try {
+                    ret.addAll(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+            return ret;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     /**
      * Normalizes source units produces by scan command (sorts, relativizes file paths etc)
      *
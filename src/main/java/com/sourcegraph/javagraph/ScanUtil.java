@@ -24,11 +24,25 @@ public class ScanUtil {
      * @return set of found files
      * @throws IOException
      */
+    @SuppressWarnings("try")
     public static HashSet<Path> findMatchingFiles(String fileName) throws IOException {
         String pat = "glob:**/" + fileName;
         PathMatcher matcher = FileSystems.getDefault().getPathMatcher(pat);
         HashSet<Path> result = new HashSet<>();
 
+        try (Metrics.Timer ignored = Metrics.start("walk")) {
+            walk(matcher, result);
+        }
+        return result;
+    }
+
+    /**
+     * Recursively collects files matching given matcher in current working directory
+     * @param matcher matcher to check files against
+     * @param result set to add found files to
+     * @throws IOException
+     */
+    private static void walk(PathMatcher matcher, Collection<Path> result) throws IOException {
         Files.walkFileTree(PathUtil.CWD, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -53,8 +67,6 @@ public class ScanUtil {
                 return FileVisitResult.CONTINUE;
             }
         });
-
-        return result;
     }
 
     /**
@@ -22,6 +22,22 @@ public class SourceUnit {
      */
     public static final String DEFAULT_TYPE = "JavaArtifact";
 
+    /**
+     * Suffix of names of units made of test sources
+     */
+    public static final String TEST_SUFFIX = "#test";
+
+    /**
+     * Name of the unit test unit depends on (located in the Data)
+     */
+    public static final String MAIN_UNIT = "MainUnit";
+
+    /**
+     * Class files of upstream units used instead of their sources (located in the Data), elements have the same
+     * structure as SourcePath ones: unit name, version, directory
+     */
+    public static final String STUB_PATH = "StubPath";
+
     /**
      * Source unit name
      */
@@ -100,6 +116,13 @@ public class SourceUnit {
         return new GenericProject(this);
     }
 
+    /**
+     * @return true if unit is made of test sources of some other unit
+     */
+    public boolean isTest() {
+        return Data.containsKey(MAIN_UNIT);
+    }
+
     @Override
     public int hashCode() {
         return Name == null ? 0 : Name.hashCode();
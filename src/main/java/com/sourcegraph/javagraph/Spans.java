@@ -9,6 +9,7 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import java.io.IOException;
+import java.util.Stack;
 
 /**
  * Produces spans (start, end) of expression tree nodes in current compilation unit
@@ -17,7 +18,7 @@ public final class Spans {
     private final CompilationUnitTree compilationUnit;
     private final Trees trees;
     private final SourcePositions srcPos;
-    private final TreeScanner scanner;
+    private final Stack<Long> parameterizedPositions;
 
     private String src;
 
@@ -26,10 +27,20 @@ public final class Spans {
      * @param scanner expression tree scanner
      */
     public Spans(TreeScanner scanner) {
-        this.scanner = scanner;
-        this.compilationUnit = scanner.compilationUnit;
-        this.srcPos = scanner.trees.getSourcePositions();
-        this.trees = scanner.trees;
+        this(scanner.compilationUnit, scanner.trees, scanner.parameterizedPositions);
+    }
+
+    /**
+     * Constructs new span object
+     * @param compilationUnit current compilation unit
+     * @param trees trees object
+     * @param parameterizedPositions stack of positions of parameterized types being visited
+     */
+    public Spans(CompilationUnitTree compilationUnit, Trees trees, Stack<Long> parameterizedPositions) {
+        this.parameterizedPositions = parameterizedPositions;
+        this.compilationUnit = compilationUnit;
+        this.srcPos = trees.getSourcePositions();
+        this.trees = trees;
 
         try {
             src = compilationUnit.getSourceFile().getCharContent(true).toString();
@@ -152,8 +163,8 @@ public final class Spans {
             // new Owner<Integer>().new Inner<String>() {}.getOwnerType());
             // gives treeSrc = "<String>() {}"
             // let's try to resolve it using stacked positions
-            if (!scanner.parameterizedPositions.isEmpty()) {
-                treeStart = scanner.parameterizedPositions.peek().intValue();
+            if (!parameterizedPositions.isEmpty()) {
+                treeStart = parameterizedPositions.peek().intValue();
                 treeSrc = src.substring(treeStart, treeEnd);
                 nameStart = treeSrc.indexOf(name);
             }
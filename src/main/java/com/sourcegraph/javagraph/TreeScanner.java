@@ -37,6 +37,14 @@ public class TreeScanner extends TreePathScanner<Void, Void> {
     private final Set<Ref> seenRefs = new HashSet<>();
     private Spans spans;
 
+    /**
+     * Number of emitted and dropped (already seen) definitions and references
+     */
+    int defs;
+    int refs;
+    int duplicateDefs;
+    int duplicateRefs;
+
     CompilationUnitTree compilationUnit;
     final Trees trees;
     Stack<Long> parameterizedPositions = new Stack<>();
@@ -84,9 +92,12 @@ public class TreeScanner extends TreePathScanner<Void, Void> {
         r.end = span[1];
         r.def = def;
 
-        if (seenRefs.contains(r))
+        if (seenRefs.contains(r)) {
+            duplicateRefs++;
             return;
+        }
         seenRefs.add(r);
+        refs++;
         try {
             emit.writeRef(r);
         } catch (IOException e) {
@@ -119,9 +130,12 @@ public class TreeScanner extends TreePathScanner<Void, Void> {
             return;
         }
 
-        if (seenDefs.contains(s.defKey))
+        if (seenDefs.contains(s.defKey)) {
+            duplicateDefs++;
             return;
+        }
         seenDefs.add(s.defKey);
+        defs++;
 
         Element current = currentElement();
         s.name = current.getSimpleName().toString();
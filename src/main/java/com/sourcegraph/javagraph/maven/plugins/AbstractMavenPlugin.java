@@ -11,6 +11,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -98,20 +101,33 @@ public abstract class AbstractMavenPlugin implements MavenPlugin {
         return null;
     }
 
+    /**
+     * Generates source files for a given project unless sources generated from the same inputs are already there.
+     * In batch mode generation is postponed, see {@link GeneratedSources}
+     * @param project Maven project
+     * @param repoDir location (directory) of local Maven repository
+     * @param outputDirectory directory where plugin generates source files
+     * @param inputs files or directories plugin generates sources from
+     */
+    protected void generateSources(MavenProject project, File repoDir, File outputDirectory, Collection<File> inputs) {
+        GeneratedSources.getInstance().generate(project, repoDir, getPlugin(project), outputDirectory, inputs);
+    }
+
     /**
      * Executes specific Maven goal by running 'mvn ... goal'
      * @param pomFile location (file) of pom.xml file to use
      * @param repoDir location (directory) of local Maven repository
-     * @param goal goal to execute, for example 'test-compile'
+     * @param goal goal to execute, for example 'test-compile', optionally preceded by extra Maven arguments
      */
-    protected static void runMavenGoal(File pomFile, File repoDir, String goal) {
+    protected static void runMavenGoal(File pomFile, File repoDir, String... goal) {
 
-        String cmd[] = new String[] {
-                getMavenCmd(),
-                "-Dmaven.repo.local=" + repoDir,
-                "-f", pomFile.getAbsolutePath(),
-                goal
-        };
+        List<String> command = new ArrayList<>();
+        command.add(getMavenCmd());
+        command.add("-Dmaven.repo.local=" + repoDir);
+        command.add("-f");
+        command.add(pomFile.getAbsolutePath());
+        Collections.addAll(command, goal);
+        String cmd[] = command.toArray(new String[command.size()]);
 
         ProcessBuilder pb = new ProcessBuilder(cmd);
         pb.directory(pomFile.getParentFile());
@@ -143,7 +159,7 @@ public abstract class AbstractMavenPlugin implements MavenPlugin {
      *
      * @return "mvn" command to use in current environment (mvn.cmd, mvn.bat, mvn)
      */
-    protected static String getMavenCmd() {
+    protected static synchronized String getMavenCmd() {
         if (mavenCmd == null) {
             if (SystemUtils.IS_OS_WINDOWS) {
                 // since 3.3 command name is mvn.cmd, before - mvn.bat
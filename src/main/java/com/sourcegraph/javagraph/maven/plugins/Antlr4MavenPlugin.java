@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collections;
 
 /**
  * Adds basic support of http://www.antlr.org/api/maven-plugin/latest/
@@ -34,14 +35,41 @@ public class Antlr4MavenPlugin extends AbstractMavenPlugin {
     }
 
     /**
-     * Invokes Maven goal generate-sources and updates project's source roots with generated source directories
+     * Invokes Maven goal generate-sources (unless grammars were not changed since last run)
+     * and updates project's source roots with generated source directories
      */
     @Override
     public void apply(MavenProject project,
                       File repoDir) {
         // Let's create generated source files from ANTLR grammar
-        runMavenGoal(project.getModel().getPomFile(), repoDir, "generate-sources");
-        project.getCompileSourceRoots().add(getGeneratedSourceDirectory(project));
+        String generatedSourceDirectory = getGeneratedSourceDirectory(project);
+        generateSources(project,
+                repoDir,
+                new File(generatedSourceDirectory),
+                Collections.singletonList(getSourceDirectory(project)));
+        project.getCompileSourceRoots().add(generatedSourceDirectory);
+    }
+
+    /**
+     * @param project Maven project
+     * @return grammar directory retrieved from ANTLR plugin's configuration
+     */
+    private File getSourceDirectory(MavenProject project) {
+        File root = project.getModel().getProjectDirectory();
+        Plugin antlr = getPlugin(project);
+        if (antlr != null) {
+            for (PluginExecution pluginExecution : antlr.getExecutions()) {
+                Object configuration = pluginExecution.getConfiguration();
+                if (configuration == null || !(configuration instanceof Xpp3Dom)) {
+                    continue;
+                }
+                Xpp3Dom sourceDirectory = ((Xpp3Dom) configuration).getChild("sourceDirectory");
+                if (sourceDirectory != null) {
+                    return PathUtil.concat(root, sourceDirectory.getValue());
+                }
+            }
+        }
+        return PathUtil.concat(root, "src/main/antlr4");
     }
 
     /**
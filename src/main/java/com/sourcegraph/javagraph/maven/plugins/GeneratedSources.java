@@ -0,0 +1,290 @@
+package com.sourcegraph.javagraph.maven.plugins;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps track of source files produced by Maven code generation plugins (ANTLR, Android).
+ * Each generation request is identified by a hash of plugin's inputs (grammars, resources, POM file) and
+ * configuration. When hash matches the one recorded in the persistent cache and output directory is still there,
+ * Maven invocation is skipped.
+ * Between {@link #beginBatch()} and {@link #endBatch(File)} generation requests are collected and then executed by
+ * a single Maven reactor invocation instead of one Maven process per module
+ */
+public class GeneratedSources {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeneratedSources.class);
+
+    /**
+     * Name of cache file (pom.xml => inputs hash) inside of local Maven repository
+     */
+    private static final String CACHE_FILE = "srclib-generated-sources.properties";
+
+    /**
+     * Name of directory inside of local Maven repository to keep aggregator POM for batched generation
+     */
+    private static final String AGGREGATOR_DIR = "srclib-generated-sources";
+
+    private static final String GOAL = "generate-sources";
+
+    private static GeneratedSources instance = new GeneratedSources();
+
+    private Properties cache;
+
+    /**
+     * Generation requests collected in batch mode (POM file => requests made by module's plugins)
+     */
+    private Map<File, Collection<Request>> pending = new LinkedHashMap<>();
+
+    private boolean batch;
+
+    GeneratedSources() {
+    }
+
+    /**
+     * @return singleton instance
+     */
+    public static GeneratedSources getInstance() {
+        return instance;
+    }
+
+    /**
+     * Starts collecting generation requests instead of executing them immediately
+     */
+    public synchronized void beginBatch() {
+        batch = true;
+    }
+
+    /**
+     * Executes all generation requests collected since {@link #beginBatch()} with a single Maven reactor
+     * invocation. Modules which still have no generated sources after reactor run are processed one by one
+     *
+     * @param repoDir local Maven repository to use
+     */
+    public synchronized void endBatch(File repoDir) {
+        batch = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<File, Collection<Request>> requests = new LinkedHashMap<>(pending);
+        pending.clear();
+
+        if (requests.size() > 1) {
+            LOGGER.info("Generating sources for {} Maven modules", requests.size());
+            File aggregator = writeAggregator(repoDir, requests.keySet());
+            if (aggregator != null) {
+                runMavenGoal(aggregator, repoDir, "--fail-at-end", GOAL);
+                FileUtils.deleteQuietly(aggregator.getParentFile());
+            }
+        }
+        for (Map.Entry<File, Collection<Request>> entry : requests.entrySet()) {
+            if (entry.getValue().stream().anyMatch(request -> !request.outputDirectory.isDirectory())) {
+                runMavenGoal(entry.getKey(), repoDir, GOAL);
+            }
+            for (Request request : entry.getValue()) {
+                update(repoDir, request);
+            }
+        }
+        saveCache(repoDir);
+    }
+
+    /**
+     * Makes sure that sources are generated for a given project, runs Maven 'generate-sources' goal if needed
+     *
+     * @param project         Maven project
+     * @param repoDir         local Maven repository to use
+     * @param plugin          code generation plugin, its configuration is a part of hash
+     * @param outputDirectory directory where plugin generates source files
+     * @param inputs          files or directories plugin generates sources from
+     */
+    public synchronized void generate(MavenProject project,
+                                      File repoDir,
+                                      Plugin plugin,
+                                      File outputDirectory,
+                                      Collection<File> inputs) {
+        File pomFile = project.getModel().getPomFile();
+        String key = pomFile.getAbsolutePath() + '#' + (plugin == null ? StringUtils.EMPTY : plugin.getKey());
+        Request request = new Request(key, outputDirectory, hash(pomFile, plugin, inputs));
+        if (request.hash != null &&
+                request.hash.equals(getCache(repoDir).getProperty(key)) &&
+                outputDirectory.isDirectory()) {
+            LOGGER.debug("Generated sources in {} are up to date", outputDirectory);
+            return;
+        }
+        if (batch) {
+            pending.computeIfAbsent(pomFile, k -> new ArrayList<>()).add(request);
+            return;
+        }
+        runMavenGoal(pomFile, repoDir, GOAL);
+        update(repoDir, request);
+        saveCache(repoDir);
+    }
+
+    /**
+     * Runs Maven with a given POM file
+     *
+     * @param pomFile POM file
+     * @param repoDir local Maven repository to use
+     * @param goal    goal and options
+     */
+    void runMavenGoal(File pomFile, File repoDir, String... goal) {
+        AbstractMavenPlugin.runMavenGoal(pomFile, repoDir, goal);
+    }
+
+    /**
+     * Records request's hash in the cache if generation succeeded or drops stale entry otherwise
+     *
+     * @param repoDir local Maven repository
+     * @param request request to update cache with
+     */
+    private void update(File repoDir, Request request) {
+        if (request.hash != null && request.outputDirectory.isDirectory()) {
+            getCache(repoDir).setProperty(request.key, request.hash);
+        } else {
+            getCache(repoDir).remove(request.key);
+        }
+    }
+
+    /**
+     * @param repoDir local Maven repository
+     * @return persistent cache (POM file => hash), loads it if needed
+     */
+    private Properties getCache(File repoDir) {
+        if (cache == null) {
+            cache = new Properties();
+            File file = new File(repoDir, CACHE_FILE);
+            if (file.isFile()) {
+                try (InputStream is = new FileInputStream(file)) {
+                    cache.load(is);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to read generated sources cache {}", file, e);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Saves persistent cache
+     *
+     * @param repoDir local Maven repository
+     */
+    private void saveCache(File repoDir) {
+        File file = new File(repoDir, CACHE_FILE);
+        try {
+            FileUtils.forceMkdir(repoDir);
+            try (OutputStream os = new FileOutputStream(file)) {
+                getCache(repoDir).store(os, null);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write generated sources cache {}", file, e);
+        }
+    }
+
+    /**
+     * Writes aggregator POM which refers to all modules to generate sources for
+     *
+     * @param repoDir  local Maven repository
+     * @param pomFiles POM files of modules to include
+     * @return aggregator POM file or null if it was not possible to create one
+     */
+    private static File writeAggregator(File repoDir, Collection<File> pomFiles) {
+        File dir = new File(repoDir, AGGREGATOR_DIR);
+        File pomFile = new File(dir, "pom.xml");
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n").
+                append("  <modelVersion>4.0.0</modelVersion>\n").
+                append("  <groupId>srclib</groupId>\n").
+                append("  <artifactId>").append(AGGREGATOR_DIR).append("</artifactId>\n").
+                append("  <version>1</version>\n").
+                append("  <packaging>pom</packaging>\n").
+                append("  <modules>\n");
+        Path base = dir.getAbsoluteFile().toPath();
+        for (File modulePomFile : pomFiles) {
+            String module = base.relativize(modulePomFile.getAbsoluteFile().toPath()).toString();
+            pom.append("    <module>").append(module.replace('\\', '/')).append("</module>\n");
+        }
+        pom.append("  </modules>\n</project>\n");
+        try {
+            FileUtils.forceMkdir(dir);
+            FileUtils.writeStringToFile(pomFile, pom.toString(), StandardCharsets.UTF_8);
+            return pomFile;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write aggregator POM {}", pomFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Computes hash of POM file, plugin configuration, and input files
+     *
+     * @param pomFile POM file
+     * @param plugin  plugin configuration
+     * @param inputs  files and directories to include into hash
+     * @return hex-encoded hash or null if some of inputs can't be read
+     */
+    static String hash(File pomFile, Plugin plugin, Collection<File> inputs) {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        try {
+            digest.update(FileUtils.readFileToByteArray(pomFile));
+            if (plugin != null) {
+                digest.update(StringUtils.defaultString(plugin.getId()).getBytes(StandardCharsets.UTF_8));
+                digest.update(String.valueOf(plugin.getConfiguration()).getBytes(StandardCharsets.UTF_8));
+                for (PluginExecution execution : plugin.getExecutions()) {
+                    digest.update(String.valueOf(execution.getConfiguration()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            for (File input : inputs) {
+                if (!input.exists()) {
+                    continue;
+                }
+                List<Path> files;
+                try (Stream<Path> stream = Files.walk(input.toPath())) {
+                    files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to compute generated sources hash for {}", pomFile, e);
+            return null;
+        }
+        return DigestUtils.sha1Hex(digest.digest());
+    }
+
+    /**
+     * Source generation request made by a single plugin
+     */
+    private static class Request {
+
+        /**
+         * Cache key, POM file and plugin key
+         */
+        String key;
+        File outputDirectory;
+        String hash;
+
+        Request(String key, File outputDirectory, String hash) {
+            this.key = key;
+            this.outputDirectory = outputDirectory;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,15 +1,15 @@
 package com.sourcegraph.javagraph.maven.plugins;
 
-import com.google.common.reflect.ClassPath;
 import org.apache.maven.project.MavenProject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 /**
  * Holds list of registered maven plugins, applies them for a given Maven project with the aim to extract some
@@ -58,32 +58,28 @@ public class MavenPlugins {
     }
 
     /**
-     * Lazy initialization of registered plugins
+     * Lazy initialization of registered plugins. Plugins are listed in
+     * META-INF/services/com.sourcegraph.javagraph.maven.plugins.MavenPlugin, custom plugins may be added by
+     * putting JAR with the same service descriptor to the classpath
      * @return list of registered plugins, instantiates them if needed
      */
     private Collection<MavenPlugin> getPlugins() {
         if (plugins == null) {
             plugins = new ArrayList<>();
 
-            try {
-                ClassPath classPath = ClassPath.from(this.getClass().getClassLoader());
-                // TODO alexsaveliev: add ability to search in custom packages
-                for (ClassPath.ClassInfo info : classPath.getTopLevelClasses(this.getClass().getPackage().getName())) {
-                    Class c = info.load();
-                    if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
-                        continue;
-                    }
-                    if (MavenPlugin.class.isAssignableFrom(c)) {
-                        try {
-                            LOGGER.debug("Registering Maven plugin {}", info);
-                            plugins.add((MavenPlugin) c.newInstance());
-                        } catch (InstantiationException | IllegalAccessException e) {
-                            LOGGER.warn("Failed to register Maven plugin " + info.getName());
-                        }
+            Iterator<MavenPlugin> iterator = ServiceLoader.load(MavenPlugin.class,
+                    this.getClass().getClassLoader()).iterator();
+            while (true) {
+                try {
+                    if (!iterator.hasNext()) {
+                        break;
                     }
+                    MavenPlugin plugin = iterator.next();
+                    LOGGER.debug("Registering Maven plugin {}", plugin.getClass().getName());
+                    plugins.add(plugin);
+                } catch (ServiceConfigurationError e) {
+                    LOGGER.warn("Failed to register Maven plugin", e);
                 }
-            } catch (IOException e) {
-                LOGGER.warn("Unable to initialize Maven plugins", e);
             }
         }
         return plugins;
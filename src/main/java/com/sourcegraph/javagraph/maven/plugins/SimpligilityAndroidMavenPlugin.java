@@ -1,12 +1,15 @@
 package com.sourcegraph.javagraph.maven.plugins;
 
 import com.sourcegraph.javagraph.PathUtil;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.project.MavenProject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * Adds basic support of http://simpligility.github.io/android-maven-plugin/index.html
@@ -16,6 +19,14 @@ public class SimpligilityAndroidMavenPlugin extends AbstractMavenPlugin {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SimpligilityAndroidMavenPlugin.class);
 
+    /**
+     * Default locations of Android manifest, resources, and assets (both old and new project layouts)
+     */
+    private static final String INPUTS[] = new String[]{
+            "AndroidManifest.xml", "res", "assets",
+            "src/main/AndroidManifest.xml", "src/main/res", "src/main/assets"
+    };
+
     @Override
     public String getGroupId() {
         return "com.simpligility.maven.plugins";
@@ -32,20 +43,41 @@ public class SimpligilityAndroidMavenPlugin extends AbstractMavenPlugin {
     }
 
     /**
-     * Invokes 'generate-sources' Maven goal, updates project compile source roots with generated source directories,
+     * Invokes 'generate-sources' Maven goal (unless manifest, resources, and AIDL files were not changed since last run),
+     * updates project compile source roots with generated source directories,
      * and marks presence of Android SDK in current source unit
      */
     @Override
     public void apply(MavenProject project,
                       File repoDir) {
         // Let's create generated source file such as R.java, BuildConfig.java and AIDL-based ones
-        runMavenGoal(project.getModel().getPomFile(), repoDir, "generate-sources");
         String sourceRoot = getGeneratedSourceDirectory(project);
+        generateSources(project, repoDir, new File(sourceRoot), getInputs(project));
         LOGGER.debug("Registering source root {}", sourceRoot);
         project.getCompileSourceRoots().add(sourceRoot);
         project.getProperties().setProperty(com.sourcegraph.javagraph.MavenProject.ANDROID_PROPERTY, StringUtils.EMPTY);
     }
 
+    /**
+     * @param project Maven project
+     * @return files and directories Android plugin generates sources from: manifest, resources, assets, and
+     * AIDL files from project's source roots
+     */
+    private static Collection<File> getInputs(MavenProject project) {
+        File root = project.getModel().getProjectDirectory();
+        Collection<File> inputs = new ArrayList<>();
+        for (String input : INPUTS) {
+            inputs.add(PathUtil.concat(root, input));
+        }
+        for (String sourceRoot : project.getCompileSourceRoots()) {
+            File dir = PathUtil.concat(root, sourceRoot);
+            if (dir.isDirectory()) {
+                inputs.addAll(FileUtils.listFiles(dir, new String[]{"aidl"}, true));
+            }
+        }
+        return inputs;
+    }
+
     /**
      *
      * @param project Maven project
@@ -132,6 +132,12 @@ public class DefaultModelBuilder
     @Requirement
     private ReportingConverter reportingConverter;
 
+    /**
+     * When set, builder produces trimmed effective model: profiles are activated by ID only (or by default),
+     * model validation and URL normalization are skipped
+     */
+    private boolean lightweight;
+
     public DefaultModelBuilder setModelProcessor( ModelProcessor modelProcessor )
     {
         this.modelProcessor = modelProcessor;
@@ -234,6 +240,17 @@ public class DefaultModelBuilder
         return this;
     }
 
+    public DefaultModelBuilder setLightweight( boolean lightweight )
+    {
+        this.lightweight = lightweight;
+        return this;
+    }
+
+    public boolean isLightweight()
+    {
+        return lightweight;
+    }
+
     public ModelBuildingResult build( ModelBuildingRequest request )
         throws ModelBuildingException
     {
@@ -245,7 +262,7 @@ public class DefaultModelBuilder
 
         problems.setSource( "(external profiles)" );
         List<Profile> activeExternalProfiles =
-            profileSelector.getActiveProfiles( request.getProfiles(), profileActivationContext, problems );
+            getActiveProfiles( request.getProfiles(), profileActivationContext, problems );
 
         result.setActiveExternalProfiles( activeExternalProfiles );
 
@@ -286,7 +303,7 @@ public class DefaultModelBuilder
             profileActivationContext.setProjectProperties( tmpModel.getProperties() );
 
             List<Profile> activePomProfiles =
-                profileSelector.getActiveProfiles( rawModel.getProfiles(), profileActivationContext, problems );
+                getActiveProfiles( rawModel.getProfiles(), profileActivationContext, problems );
             currentData.setActiveProfiles( activePomProfiles );
 
             Map<String, Activation> interpolatedActivations = getProfileActivations( rawModel, false );
@@ -377,7 +394,10 @@ public class DefaultModelBuilder
         resultModel = interpolateModel( resultModel, request, problems );
         resultData.setModel( resultModel );
 
-        modelUrlNormalizer.normalize( resultModel, request );
+        if ( !lightweight )
+        {
+            modelUrlNormalizer.normalize( resultModel, request );
+        }
 
         //Now the fully interpolated model is available reconfigure the resolver
         configureResolver( request.getModelResolver(), resultModel, problems , true );
@@ -452,7 +472,10 @@ public class DefaultModelBuilder
             pluginConfigurationExpander.expandPluginConfiguration( resultModel, request, problems );
         }
 
-        modelValidator.validateEffectiveModel( resultModel, request, problems );
+        if ( !lightweight )
+        {
+            modelValidator.validateEffectiveModel( resultModel, request, problems );
+        }
 
         if ( hasModelErrors( problems ) )
         {
@@ -565,7 +588,10 @@ public class DefaultModelBuilder
         model.setPomFile( pomFile );
 
         problems.setSource( model );
-        modelValidator.validateRawModel( model, request, problems );
+        if ( !lightweight )
+        {
+            modelValidator.validateRawModel( model, request, problems );
+        }
 
         if ( hasFatalErrors( problems ) )
         {
@@ -588,6 +614,35 @@ public class DefaultModelBuilder
         return context;
     }
 
+    private List<Profile> getActiveProfiles( List<Profile> profiles, DefaultProfileActivationContext context,
+                                             ModelProblemCollector problems )
+    {
+        if ( !lightweight )
+        {
+            return profileSelector.getActiveProfiles( profiles, context, problems );
+        }
+
+        // lightweight mode does not evaluate JDK, OS, file and property activators
+        List<Profile> activeProfiles = new ArrayList<Profile>();
+        List<Profile> defaultProfiles = new ArrayList<Profile>();
+        for ( Profile profile : profiles )
+        {
+            if ( context.getInactiveProfileIds().contains( profile.getId() ) )
+            {
+                continue;
+            }
+            if ( context.getActiveProfileIds().contains( profile.getId() ) )
+            {
+                activeProfiles.add( profile );
+            }
+            else if ( profile.getActivation() != null && profile.getActivation().isActiveByDefault() )
+            {
+                defaultProfiles.add( profile );
+            }
+        }
+        return activeProfiles.isEmpty() ? defaultProfiles : activeProfiles;
+    }
+
     private void configureResolver( ModelResolver modelResolver, Model model, DefaultModelProblemCollector problems )
     {
         configureResolver( modelResolver, model, problems, false );
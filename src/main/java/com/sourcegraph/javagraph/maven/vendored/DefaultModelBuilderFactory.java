@@ -230,6 +230,18 @@ public class DefaultModelBuilderFactory
         return modelBuilder;
     }
 
+    /**
+     * Creates a new model builder instance that skips profile activators, validation and URL normalization.
+     * Effective model still provides coordinates, dependencies, modules, repositories, build directories,
+     * properties and plugin configuration.
+     *
+     * @return The new lightweight model builder instance, never {@code null}.
+     */
+    public DefaultModelBuilder newLightweightInstance()
+    {
+        return newInstance().setLightweight( true );
+    }
+
     private static class StubLifecycleBindingsInjector
         implements LifecycleBindingsInjector
     {
@@ -0,0 +1,61 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestAndroidLibcoreIndex {
+
+	/**
+	 * Making sure that index answers the same way as binary search over the original list
+	 */
+	@Test
+	public void testContains() throws Exception {
+		List<String> names;
+		try (InputStream is = getClass().getResourceAsStream("/android-libcore.dat")) {
+			names = IOUtils.readLines(is, StandardCharsets.US_ASCII);
+		}
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		AndroidLibcoreIndex.write(names, os);
+		AndroidLibcoreIndex index = AndroidLibcoreIndex.read(new ByteArrayInputStream(os.toByteArray()));
+		assertEquals(names.size(), index.size());
+
+		for (String name : names) {
+			for (String query : Arrays.asList(name,
+					name + "X",
+					name.substring(0, name.length() - 1),
+					name.substring(0, name.length() - 1) + "~",
+					name.substring(0, name.length() - 1) + "!")) {
+				String s = "jar:file:/android.jar!/" + query + ".class";
+				int start = s.indexOf('!') + 2;
+				assertEquals(query,
+						Collections.binarySearch(names, query) >= 0,
+						index.contains(s, start, start + query.length()));
+			}
+		}
+		assertEquals(false, index.contains("", 0, 0));
+		assertEquals(false, index.contains("~", 0, 1));
+	}
+
+	/**
+	 * Making sure that android.jar origins are resolved to libcore or frameworks/base
+	 */
+	@Test
+	public void testResolve() throws Exception {
+		assertEquals(ResolvedTarget.androidCore(),
+				AndroidOriginResolver.resolve(new URI("jar:file:/sdk/android.jar!/android/system/Os$1.class")));
+		assertEquals(ResolvedTarget.androidSDK(),
+				AndroidOriginResolver.resolve(new URI("jar:file:/sdk/android.jar!/android/app/Activity.class")));
+	}
+
+}
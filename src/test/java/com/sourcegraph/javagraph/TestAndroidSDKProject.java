@@ -0,0 +1,109 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAndroidSDKProject {
+
+	private File dir;
+	private File aidl;
+	private File log;
+	private File hashes;
+	private File source;
+	private File target;
+
+	@Before
+	public void setUp() throws Exception {
+		Assume.assumeTrue(SystemUtils.IS_OS_UNIX);
+		dir = Files.createTempDirectory("srclib-aidl").toFile();
+		log = new File(dir, "aidl.log");
+		hashes = new File(dir, "aidl-hashes.properties");
+		source = new File(dir, "java/com/example/IFoo.aidl");
+		target = new File(dir, "java/com/example/IFoo.java");
+		FileUtils.forceMkdir(source.getParentFile());
+
+		// fake aidl program (classic command line), fails on files containing FAIL
+		aidl = new File(dir, "aidl");
+		write(aidl, "#!/bin/sh\n" +
+				"[ \"$1\" = \"--help\" ] && exit 0\n" +
+				"for last; do :; done\n" +
+				"echo \"$last\" >> '" + log.getAbsolutePath() + "'\n" +
+				"grep -q FAIL \"$last\" && exit 1\n" +
+				"echo 'interface IFoo {}' > \"${last%.aidl}.java\"\n");
+		assertTrue(aidl.setExecutable(true));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (dir != null) {
+			FileUtils.deleteQuietly(dir);
+		}
+	}
+
+	/**
+	 * Making sure that unchanged .aidl files are skipped, changed ones are generated again and failed ones are
+	 * retried
+	 */
+	@Test
+	public void testAidlHashes() throws Exception {
+		write(source, "interface IFoo { void foo(); }");
+		assertEquals(Collections.singletonList(target.getAbsolutePath()), process());
+		assertEquals(1, runs());
+
+		// unchanged
+		assertEquals(Collections.singletonList(target.getAbsolutePath()), process());
+		assertEquals(1, runs());
+
+		// changed
+		write(source, "interface IFoo { void bar(); }");
+		assertEquals(Collections.singletonList(target.getAbsolutePath()), process());
+		assertEquals(2, runs());
+
+		// changed and failed, stale .java file is not used
+		write(source, "interface IFoo { FAIL }");
+		assertTrue(process().isEmpty());
+		assertEquals(3, runs());
+		assertFalse(target.exists());
+
+		// failed file is retried
+		assertTrue(process().isEmpty());
+		assertEquals(4, runs());
+
+		write(source, "interface IFoo { void baz(); }");
+		assertEquals(Collections.singletonList(target.getAbsolutePath()), process());
+		assertEquals(5, runs());
+	}
+
+	private Collection<String> process() throws Exception {
+		return AndroidSDKProject.processAidlFiles(Collections.singletonList(source.getAbsolutePath()),
+				aidl.getAbsolutePath(),
+				hashes);
+	}
+
+	private int runs() throws Exception {
+		if (!log.isFile()) {
+			return 0;
+		}
+		List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+		return lines.size();
+	}
+
+	private static void write(File file, String content) throws Exception {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
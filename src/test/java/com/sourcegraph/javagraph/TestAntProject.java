@@ -0,0 +1,94 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestAntProject {
+
+	private static final String[] VERSIONS = {"1.5", "1.6", "1.7", "1.8"};
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("srclib-ant").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteQuietly(dir);
+	}
+
+	/**
+	 * Making sure that concurrently evaluated build.xml files which run javac through macrodefs don't share state:
+	 * each unit gets only its own files and source version
+	 */
+	@Test
+	public void testConcurrentMacrodefs() throws Exception {
+		List<Path> buildXmlFiles = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			buildXmlFiles.add(writeProject("p" + i, VERSIONS[i % VERSIONS.length]));
+		}
+
+		Collection<SourceUnit> units = AntProject.getSourceUnits(buildXmlFiles);
+		assertEquals(buildXmlFiles.size(), units.size());
+		Iterator<SourceUnit> iterator = units.iterator();
+		for (int i = 0; i < buildXmlFiles.size(); i++) {
+			SourceUnit unit = iterator.next();
+			String name = "p" + i;
+			assertEquals(name, unit.Name);
+			assertEquals(VERSIONS[i % VERSIONS.length], unit.Data.get("SourceVersion"));
+			Set<String> expected = new HashSet<>();
+			expected.add(new File(dir, name + "/src/" + name + "/A.java").getCanonicalPath());
+			expected.add(new File(dir, name + "/src/" + name + "/B.java").getCanonicalPath());
+			Set<String> files = new HashSet<>();
+			for (String file : unit.Files) {
+				files.add(new File(file).getCanonicalPath());
+			}
+			assertEquals(expected, files);
+		}
+	}
+
+	/**
+	 * Writes Ant project which compiles its sources using macrodef
+	 *
+	 * @param name    project name, also name of project directory and of package its sources belong to
+	 * @param version source version
+	 * @return build.xml file
+	 */
+	private Path writeProject(String name, String version) throws Exception {
+		File projectDir = new File(dir, name);
+		for (String className : new String[]{"A", "B"}) {
+			FileUtils.writeStringToFile(new File(projectDir, "src/" + name + '/' + className + ".java"),
+					"package " + name + ";\nclass " + className + " { }\n");
+		}
+		File buildXml = new File(projectDir, "build.xml");
+		FileUtils.writeStringToFile(buildXml, "<project name=\"" + name + "\" default=\"compile\">\n" +
+				"  <macrodef name=\"compile-sources\">\n" +
+				"    <attribute name=\"src\"/>\n" +
+				"    <attribute name=\"version\"/>\n" +
+				"    <sequential>\n" +
+				"      <javac srcdir=\"@{src}\" source=\"@{version}\" destdir=\"build\" includeantruntime=\"false\"/>\n" +
+				"    </sequential>\n" +
+				"  </macrodef>\n" +
+				"  <target name=\"compile\">\n" +
+				"    <compile-sources src=\"src\" version=\"" + version + "\"/>\n" +
+				"  </target>\n" +
+				"</project>\n");
+		return buildXml.toPath();
+	}
+}
@@ -0,0 +1,88 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestClassPathIndex {
+
+	/**
+	 * Making sure that package declarations, imports, and qualified names are collected
+	 */
+	@Test
+	public void testReferencedPackages() throws Exception {
+		StringJavaFileObject file = new StringJavaFileObject("A.java",
+				"package a.b;\n" +
+						"import c.d.*;\n" +
+						"import static e.F.g;\n" +
+						"class A { java.util.List<String> l = new java.util . ArrayList<>(); }");
+		Set<String> packages = ClassPathIndex.collectReferencedPackages(Collections.singletonList(file));
+		for (String name : Arrays.asList("a", "a.b", "c.d", "e", "java.util")) {
+			assertTrue("Missing package " + name, packages.contains(name));
+		}
+	}
+
+	/**
+	 * Making sure that only JAR files providing referenced packages are kept
+	 */
+	@Test
+	public void testPrune() throws Exception {
+		File dir = Files.createTempDirectory("srclib-classpath").toFile();
+		try {
+			File used = createJar(new File(dir, "used.jar"), "c/d/D.class");
+			File unused = createJar(new File(dir, "unused.jar"), "x/y/Y.class");
+			StringJavaFileObject file = new StringJavaFileObject("A.java",
+					"package a;\nimport c.d.D;\nclass A { D d; }");
+			List<File> classPath = ClassPathIndex.prune(Arrays.asList(unused, dir, used),
+					Collections.singletonList(file));
+			assertEquals(Arrays.asList(dir, used), classPath);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	/**
+	 * Making sure that classes are looked up in JAR files and directories, nested classes use dots
+	 */
+	@Test
+	public void testClasses() throws Exception {
+		File dir = Files.createTempDirectory("srclib-classpath").toFile();
+		try {
+			File jar = createJar(new File(dir, "lib.jar"), "c/d/D.class", "c/d/D$Inner.class");
+			File classes = new File(dir, "classes");
+			FileUtils.forceMkdir(new File(classes, "e"));
+			FileUtils.touch(new File(classes, "e/E.class"));
+			ClassPathIndex.Classes lookup = new ClassPathIndex.Classes(Arrays.asList(jar, classes));
+			assertTrue(lookup.contains("c.d.D"));
+			assertTrue(lookup.contains("c.d.D.Inner"));
+			assertTrue(lookup.contains("e.E"));
+			assertFalse(lookup.contains("c.d.X"));
+			assertFalse(lookup.contains("x.y.D"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	private static File createJar(File jar, String... entries) throws Exception {
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (String entry : entries) {
+				out.putNextEntry(new ZipEntry(entry));
+				out.closeEntry();
+			}
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,82 @@
+package com.sourcegraph.javagraph;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDependencyIndex {
+
+	/**
+	 * Making sure that only files referring to definitions of changed ones are dependents
+	 */
+	@Test
+	public void testDependents() throws Exception {
+		DependencyIndex index = new DependencyIndex();
+		GraphCommand.Graph graph = new GraphCommand.Graph();
+		graph.Defs.add(def("a/A.java", "a.A:type"));
+		graph.Defs.add(def("b/B.java", "b.B:type"));
+		graph.Defs.add(def("b/B.java", "b.B:type.f"));
+		graph.Defs.add(def("c/C.java", "c.C:type"));
+		graph.Refs.add(ref("a/A.java", "b/B.java", "b.B:type.f"));
+		graph.Refs.add(ref("c/C.java", "a/A.java", "a.A:type"));
+		graph.Refs.add(ref("b/B.java", "b/B.java", "b.B:type"));
+		index.update(graph);
+
+		assertEquals(set("a/A.java", "b/B.java"), index.getDependents(Collections.singleton("b/B.java")));
+		assertEquals(set("a/A.java", "c/C.java"), index.getDependents(Collections.singleton("a/A.java")));
+		assertEquals(set("c/C.java"), index.getDependents(Collections.singleton("c/C.java")));
+
+		// A no longer refers to B
+		graph = new GraphCommand.Graph();
+		graph.Defs.add(def("a/A.java", "a.A:type"));
+		index.update(graph);
+		assertEquals(set("b/B.java"), index.getDependents(Collections.singleton("b/B.java")));
+	}
+
+	/**
+	 * Making sure that index survives write and read
+	 */
+	@Test
+	public void testReadWrite() throws Exception {
+		DependencyIndex index = new DependencyIndex();
+		GraphCommand.Graph graph = new GraphCommand.Graph();
+		graph.Defs.add(def("a/A.java", "a.A:type"));
+		graph.Refs.add(ref("b/B.java", "a/A.java", "a.A:type"));
+		graph.Refs.add(ref("c/C.java", "a/A.java", "a.A:type"));
+		index.update(graph);
+		index.remove(Collections.singleton("c/C.java"));
+
+		File file = File.createTempFile("srclib-deps", ".json");
+		try {
+			index.write(file);
+			index = DependencyIndex.read(file);
+		} finally {
+			file.delete();
+		}
+		assertEquals(set("a/A.java", "b/B.java"), index.getDependents(Collections.singleton("a/A.java")));
+	}
+
+	private static Def def(String file, String path) {
+		Def def = new Def();
+		def.file = PathUtil.CWD.resolve(file).toString();
+		def.defKey = new DefKey(PathUtil.CWD.resolve(file).toUri(), path);
+		return def;
+	}
+
+	private static Ref ref(String file, String defFile, String path) {
+		Ref ref = new Ref();
+		ref.file = PathUtil.CWD.resolve(file).toString();
+		ref.defKey = new DefKey(PathUtil.CWD.resolve(defFile).toUri(), path);
+		return ref;
+	}
+
+	private static Set<String> set(String... items) {
+		return new HashSet<>(Arrays.asList(items));
+	}
+}
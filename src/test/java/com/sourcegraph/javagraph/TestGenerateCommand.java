@@ -0,0 +1,77 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestGenerateCommand {
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("srclib-synthetic");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	/**
+	 * Making sure that the same parameters produce the same project
+	 */
+	@Test
+	public void testDeterministic() throws Exception {
+		newCommand().generate(dir.resolve("a"));
+		newCommand().generate(dir.resolve("b"));
+		Collection<File> files = FileUtils.listFiles(dir.resolve("a").toFile(), null, true);
+		assertEquals("Unexpected number of files", 50 + 4, files.size());
+		for (File file : files) {
+			Path other = dir.resolve("b").resolve(dir.resolve("a").relativize(file.toPath()));
+			assertTrue("Files differ " + file, FileUtils.contentEquals(file, other.toFile()));
+		}
+	}
+
+	/**
+	 * Making sure that generated code compiles without errors
+	 */
+	@Test
+	public void testCompiles() throws Exception {
+		newCommand().generate(dir);
+		List<File> files = new ArrayList<>(FileUtils.listFiles(dir.toFile(), new String[]{"java"}, true));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+		fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(dir.toFile()));
+		boolean success = compiler.getTask(null,
+				fileManager,
+				diagnostics,
+				Arrays.asList("-proc:none"),
+				null,
+				fileManager.getJavaFileObjectsFromFiles(files)).call();
+		assertTrue("Compilation failed " + diagnostics.getDiagnostics(), success);
+	}
+
+	private static GenerateCommand newCommand() {
+		GenerateCommand command = new GenerateCommand();
+		command.files = 50;
+		command.modules = 3;
+		command.refs = 5;
+		command.innerClassDensity = 1.5;
+		return command;
+	}
+}
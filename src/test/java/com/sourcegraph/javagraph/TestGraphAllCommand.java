@@ -0,0 +1,233 @@
+package com.sourcegraph.javagraph;
+
+import com.google.gson.Gson;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestGraphAllCommand {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("srclib-graph-all").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteQuietly(dir);
+	}
+
+	/**
+	 * Making sure that units are graphed largest-first and failure of a unit doesn't stop others
+	 */
+	@Test
+	public void testLargestFirst() throws Exception {
+		RecordingCommand command = new RecordingCommand("b");
+		command.threads = 1;
+		int failed = command.graphAll(Arrays.asList(unit("a", 100), unit("b", 300), unit("c", 200)));
+		assertEquals(1, failed);
+		assertEquals(Arrays.asList("b", "c", "a"), command.graphed);
+	}
+
+	/**
+	 * Making sure that units which need the whole heap budget are not graphed concurrently
+	 */
+	@Test
+	public void testHeapBudget() throws Exception {
+		RecordingCommand command = new RecordingCommand();
+		command.threads = 3;
+		command.heapPerSourceByte = Integer.MAX_VALUE;
+		int failed = command.graphAll(Arrays.asList(unit("a", 100), unit("b", 300), unit("c", 200)));
+		assertEquals(0, failed);
+		assertEquals(3, command.graphed.size());
+		assertEquals(1, command.maxRunning.get());
+	}
+
+	/**
+	 * Making sure that upstream units are graphed before downstream ones, and that units forming a dependency cycle
+	 * are graphed anyway
+	 */
+	@Test
+	public void testUpstreamOrder() throws Exception {
+		SourceUnit up = unit("up", 100);
+		SourceUnit down = unit("down", 300);
+		SourceUnit x = unit("x", 200);
+		SourceUnit y = unit("y", 50);
+		sourcePath(down, "down", "up");
+		sourcePath(x, "x", "y");
+		sourcePath(y, "y", "x");
+		RecordingCommand command = new RecordingCommand();
+		command.threads = 1;
+		command.reuseUpstream = true;
+		int failed = command.graphAll(Arrays.asList(up, down, x, y));
+		assertEquals(0, failed);
+		assertEquals(Arrays.asList("up", "down", "x", "y"), command.graphed);
+	}
+
+	/**
+	 * Making sure that distinct unit names are written to distinct files
+	 */
+	@Test
+	public void testOutputFileName() throws Exception {
+		SourceUnit slash = unit("com.example/foo#test", 0);
+		SourceUnit underscore = unit("com.example_2ffoo#test", 0);
+		assertEquals("com.example_2ffoo#test.JavaArtifact.graph.json",
+				GraphAllCommand.getOutputFileName(slash, ".graph.json"));
+		assertEquals("com.example_5f2ffoo#test.JavaArtifact.graph.json",
+				GraphAllCommand.getOutputFileName(underscore, ".graph.json"));
+		assertFalse(GraphAllCommand.getOutputFileName(unit("a/b", 0), "").equals(
+				GraphAllCommand.getOutputFileName(unit("a_b", 0), "")));
+	}
+
+	/**
+	 * Making sure that references to definitions of upstream unit are the same whether downstream unit is graphed
+	 * against upstream sources or against their class files
+	 */
+	@Test
+	public void testReuseUpstream() throws Exception {
+		write("up/src/a/A.java", "package a;\n" +
+				"public class A {\n" +
+				"    public int x;\n" +
+				"    public static A create() { return new A(); }\n" +
+				"    public static class Inner {}\n" +
+				"}\n");
+		write("down/src/b/B.java", "package b;\n" +
+				"import a.A;\n" +
+				"public class B {\n" +
+				"    int y = A.create().x;\n" +
+				"    A.Inner inner;\n" +
+				"}\n");
+
+		Set<String> fromSources = graphDownstreamRefs(false);
+		Set<String> fromStubs = graphDownstreamRefs(true);
+		assertFalse(fromSources.isEmpty());
+		assertEquals(fromSources, fromStubs);
+	}
+
+	private SourceUnit unit(String name, int size) throws Exception {
+		File file = new File(dir, name.replace('/', '-') + ".java");
+		Files.write(file.toPath(), new byte[size]);
+		SourceUnit unit = new SourceUnit();
+		unit.Name = name;
+		unit.Type = SourceUnit.DEFAULT_TYPE;
+		unit.Files = Collections.singletonList(file.getAbsolutePath());
+		return unit;
+	}
+
+	private void sourcePath(SourceUnit unit, String... names) {
+		List<List<String>> sourcePath = new ArrayList<>();
+		for (String name : names) {
+			sourcePath.add(Arrays.asList(name, "1", new File(dir, name).getAbsolutePath()));
+		}
+		unit.Data.put("SourcePath", sourcePath);
+	}
+
+	/**
+	 * Graphs upstream and downstream units
+	 *
+	 * @param reuseUpstream if set, downstream unit is graphed against class files of upstream one
+	 * @return references of downstream unit to definitions of upstream one (unit, path, file and offsets)
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<String> graphDownstreamRefs(boolean reuseUpstream) throws Exception {
+		File outputDir = new File(dir, reuseUpstream ? "reuse" : "sources");
+		GraphAllCommand command = new GraphAllCommand();
+		command.outputDir = outputDir.getAbsolutePath();
+		command.reuseUpstream = reuseUpstream;
+		command.threads = 1;
+		FileUtils.forceMkdir(outputDir);
+		SourceUnit up = gradleUnit("up", "up/src/a/A.java", "up");
+		SourceUnit down = gradleUnit("down", "down/src/b/B.java", "down", "up");
+		assertEquals(0, command.graphAll(Arrays.asList(up, down)));
+		// downstream unit was graphed against class files of upstream one
+		assertEquals(reuseUpstream, down.Data.containsKey(SourceUnit.STUB_PATH));
+
+		Map<String, Object> graph;
+		try (Reader r = new InputStreamReader(new FileInputStream(
+				new File(outputDir, GraphAllCommand.getOutputFileName(down, ".graph.json"))), StandardCharsets.UTF_8)) {
+			graph = new Gson().fromJson(r, Map.class);
+		}
+		Set<String> ret = new HashSet<>();
+		for (Map<String, Object> ref : (List<Map<String, Object>>) graph.get("Refs")) {
+			if ("up".equals(ref.get("DefUnit"))) {
+				ret.add(ref.get("DefUnit") + " " + ref.get("DefPath") + " " + ref.get("File") + " " +
+						ref.get("Start") + " " + ref.get("End"));
+			}
+		}
+		return ret;
+	}
+
+	private SourceUnit gradleUnit(String name, String file, String... sourcePath) {
+		SourceUnit unit = new SourceUnit();
+		unit.Name = name;
+		unit.Type = SourceUnit.DEFAULT_TYPE;
+		unit.Files = Collections.singletonList(new File(dir, file).getAbsolutePath());
+		unit.Data.put("GradleFile", "build.gradle");
+		unit.Data.put("ClassPath", new ArrayList<>());
+		unit.Data.put("SourceVersion", Project.DEFAULT_SOURCE_CODE_VERSION);
+		List<List<String>> dirs = new ArrayList<>();
+		for (String dirName : sourcePath) {
+			dirs.add(Arrays.asList(dirName, "1", new File(dir, dirName + "/src").getAbsolutePath()));
+		}
+		unit.Data.put("SourcePath", dirs);
+		return unit;
+	}
+
+	private void write(String path, String content) throws Exception {
+		File file = new File(dir, path);
+		FileUtils.forceMkdir(file.getParentFile());
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Records units instead of graphing them
+	 */
+	private class RecordingCommand extends GraphAllCommand {
+
+		final List<String> graphed = Collections.synchronizedList(new ArrayList<>());
+		final AtomicInteger maxRunning = new AtomicInteger();
+		private final AtomicInteger running = new AtomicInteger();
+		private final List<String> failing;
+
+		RecordingCommand(String... failing) {
+			this.failing = Arrays.asList(failing);
+			outputDir = dir.getAbsolutePath();
+		}
+
+		@Override
+		void graph(SourceUnit unit, File classOutput) throws Exception {
+			int current = running.incrementAndGet();
+			maxRunning.accumulateAndGet(current, Math::max);
+			graphed.add(unit.Name);
+			try {
+				Thread.sleep(50);
+				if (failing.contains(unit.Name)) {
+					throw new IllegalStateException("Failed to graph " + unit.Name);
+				}
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+}
@@ -1,20 +1,51 @@
 package com.sourcegraph.javagraph;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class TestGrapher {
     private GraphData graph(String name, String javaSource) throws Exception {
-        Project project = new Project() {
+        return graph(name, javaSource, false);
+    }
+
+    private GraphData graph(String name, String javaSource, boolean outline) throws Exception {
+        GraphData w = new GraphData();
+        Grapher g = new Grapher(emptyProject(), w);
+        g.setOutline(outline);
+        List<JavaFileObject> files = new ArrayList<>();
+        files.add(new StringJavaFileObject(name, javaSource));
+        g.graphJavaFiles(files);
+        return w;
+    }
+
+    private static Project emptyProject() {
+        return new Project() {
 
             @Override
             public List<String> getClassPath() throws Exception {
@@ -46,12 +77,6 @@ public class TestGrapher {
                 return null;
             }
         };
-        GraphData w = new GraphData();
-        Grapher g = new Grapher(project, w);
-        List<JavaFileObject> files = new ArrayList<>();
-        files.add(new StringJavaFileObject(name, javaSource));
-        g.graphJavaFiles(files);
-        return w;
     }
 
     URI matchAnyOrigin;
@@ -168,4 +193,180 @@ public class TestGrapher {
         assertEquals(1, w.refsTo(new DefKey(null, "foo.Bar:type")).size());
         assertEquals(1, w.refsTo(new DefKey(null, "foo.Bar:type.foo")).size());
     }
+
+    @Test
+    public void testGraph_Outline() throws Exception {
+        // Outline mode should produce the same defs of types and members as attribution does.
+        String source = "package foo; import java.util.*; " +
+                "public class Bar<T> { " +
+                "/** doc */ public static final int X = 1; " +
+                "interface I { void f(List<String> l, Map.Entry<T, ?>... e); } " +
+                "enum E { A, B { } } " +
+                "Bar(Inner[] inner, String s) { } " +
+                "private <U extends Comparable<U>> U max(U a, Collection<? super T> c) { class Local { } return a; } " +
+                "static class Inner { Runnable r = new Runnable() { public void run() { } }; } }";
+        GraphData full = graph("Bar.java", source);
+        GraphData outline = graph("Bar.java", source, true);
+        Set<Def> expected = new HashSet<>();
+        for (Def def : full.defs) {
+            if (!Def.Kind.of(def.kind).local) {
+                expected.add(def);
+            }
+        }
+        assertEquals(expected, new HashSet<>(outline.defs));
+    }
+
+    /**
+     * Making sure that only given files are graphed while the rest of them are read from source path
+     */
+    @Test
+    public void testGraph_Subset() throws Exception {
+        File dir = Files.createTempDirectory("srclib-subset").toFile();
+        try {
+            File a = new File(dir, "src/a/A.java");
+            File b = new File(dir, "src/b/B.java");
+            FileUtils.writeStringToFile(a, "package a;\nclass A { int f(b.B b) { return b.g(); } }");
+            FileUtils.writeStringToFile(b, "package b;\npublic class B { public int g() { return 0; } }");
+            GraphData w = new GraphData();
+            Grapher g = new Grapher(emptyProject(), w);
+            g.addSourceRoots(Arrays.asList(a.getPath(), b.getPath()));
+            g.graphFilesAndDirs(Collections.singletonList(a.getPath()));
+            for (Def def : w.defs) {
+                assertFalse("b".equals(def.pkg));
+            }
+            assertEquals(1, w.refsTo(new DefKey(matchAnyOrigin, "b.B:type.g")).size());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Making sure that unit is compiled again with the full class path if a class from pruned JAR is missing
+     */
+    @Test
+    public void testGraph_PrunedClassPath() throws Exception {
+        File dir = Files.createTempDirectory("srclib-prune").toFile();
+        try {
+            File base = createJar(dir, "base", "x/Base.java", "package x;\npublic class Base { public void foo() { } }");
+            File sub = createJar(dir, "sub", "y/Sub.java", "package y;\npublic class Sub extends x.Base { }",
+                    base.getPath());
+            File a = new File(dir, "src/a/A.java");
+            FileUtils.writeStringToFile(a, "package a;\nimport y.Sub;\nclass A { void f(Sub s) { s.foo(); } }");
+            GraphData w = new GraphData();
+            Grapher g = new Grapher(project(Arrays.asList(base.getPath(), sub.getPath())), w);
+            g.setPruneClassPath(true);
+            g.graphFilesAndDirs(Collections.singletonList(a.getPath()));
+            assertEquals(1, w.refsTo(new DefKey(matchAnyOrigin, "x.Base:type.foo")).size());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Making sure that only missing symbols which packages are provided by pruned JAR files are considered
+     */
+    @Test
+    public void testMayBeProvided() throws Exception {
+        File dir = Files.createTempDirectory("srclib-prune").toFile();
+        try {
+            File base = createJar(dir, "base", "x/Base.java", "package x;\npublic class Base { public void foo() { } }");
+            File sub = createJar(dir, "sub", "y/Sub.java", "package y;\npublic class Sub extends x.Base { }",
+                    base.getPath());
+            File a = new File(dir, "src/a/A.java");
+            FileUtils.writeStringToFile(a, "package a;\nimport y.Sub;\nclass A { void f(Sub s) { s.foo(); } }");
+            File b = new File(dir, "src/b/B.java");
+            FileUtils.writeStringToFile(b, "package b;\nclass B { z.Missing m; }");
+            List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(sub.getPath(), new File(dir, "out"), a, b);
+            int provided = 0;
+            int notProvided = 0;
+            for (Diagnostic<?> diagnostic : diagnostics) {
+                if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                    continue;
+                }
+                boolean mayBeProvided = Grapher.mayBeProvided(diagnostic, Collections.singletonList(base));
+                if (((JavaFileObject) diagnostic.getSource()).getName().endsWith("A.java")) {
+                    assertTrue(diagnostic.toString(), mayBeProvided);
+                    provided++;
+                } else {
+                    assertFalse(diagnostic.toString(), mayBeProvided);
+                    notProvided++;
+                }
+            }
+            assertTrue(provided > 0);
+            assertTrue(notProvided > 0);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static Project project(List<String> classPath) {
+        return new Project() {
+
+            @Override
+            public List<String> getClassPath() throws Exception {
+                return classPath;
+            }
+
+            @Override
+            public List<String> getBootClassPath() throws Exception {
+                return null;
+            }
+
+            @Override
+            public List<String> getSourcePath() throws Exception {
+                return null;
+            }
+
+            @Override
+            public RawDependency getDepForJAR(Path jarFile) throws Exception {
+                return null;
+            }
+
+            @Override
+            public String getSourceCodeVersion() throws Exception {
+                return Project.DEFAULT_SOURCE_CODE_VERSION;
+            }
+
+            @Override
+            public String getSourceCodeEncoding() throws Exception {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Compiles a single source file into JAR file
+     */
+    private static File createJar(File dir, String name, String path, String source, String... classPath)
+            throws Exception {
+        File sourceFile = new File(dir, name + "/src/" + path);
+        FileUtils.writeStringToFile(sourceFile, source);
+        File classes = new File(dir, name + "/classes");
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(String.join(File.pathSeparator, classPath),
+                classes, sourceFile);
+        assertTrue(diagnostics.toString(), diagnostics.isEmpty());
+        File jar = new File(dir, name + ".jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (File file : FileUtils.listFiles(classes, new String[]{"class"}, true)) {
+                out.putNextEntry(new ZipEntry(classes.toPath().relativize(file.toPath()).toString().
+                        replace(File.separatorChar, '/')));
+                out.write(Files.readAllBytes(file.toPath()));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(String classPath, File output, File... files)
+            throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        FileUtils.forceMkdir(output);
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            List<String> options = Arrays.asList("-proc:none", "-cp", classPath, "-d", output.getPath());
+            compiler.getTask(null, fileManager, collector, options, null,
+                    fileManager.getJavaFileObjects(files)).call();
+        }
+        return collector.getDiagnostics();
+    }
 }
@@ -0,0 +1,37 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.plugins.report.XmlReportParser;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestIvyReport {
+
+	/**
+	 * Making sure that streaming parser extracts the same revisions as Ivy's own report parser
+	 */
+	@Test
+	public void testParse() throws Exception {
+		File file = new File("src/test/resources/sbt/ivy-report.xml");
+
+		XmlReportParser ivyReport = new XmlReportParser();
+		ivyReport.parse(file);
+		List<String> expected = new ArrayList<>();
+		for (ModuleRevisionId rev : ivyReport.getDependencyRevisionIds()) {
+			expected.add(rev.getOrganisation() + ':' + rev.getName() + ':' + rev.getRevision());
+		}
+
+		List<String> actual = new ArrayList<>();
+		for (String[] rev : IvyReport.parse(file)) {
+			actual.add(rev[0] + ':' + rev[1] + ':' + rev[2]);
+		}
+		assertEquals(2, actual.size());
+		assertEquals(expected, actual);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.sourcegraph.javagraph;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestJSONUtil {
+
+	/**
+	 * Making sure that definition without modifiers and type expression and of unknown kind is written
+	 * in srclib format
+	 */
+	@Test
+	public void testDef() throws Exception {
+		Def def = new Def();
+		def.defKey = new DefKey(new URI("file:/src/com/example/Foo.java"), "com.example.Foo$Bar:type.x");
+		def.kind = "SOMETHING_NEW";
+		def.name = "x";
+		def.file = PathUtil.CWD.resolve("src/com/example/Foo.java").toString();
+		def.defStart = 10;
+		def.defEnd = 20;
+		def.pkg = "com.example";
+
+		assertJSON("{" +
+				"\"File\":\"src/com/example/Foo.java\"," +
+				"\"Name\":\"x\"," +
+				"\"DefStart\":10," +
+				"\"DefEnd\":20," +
+				"\"Exported\":false," +
+				"\"Local\":true," +
+				"\"Kind\":\"var\"," +
+				"\"Path\":\"com/example/Foo.Bar:type/x\"," +
+				"\"TreePath\":\"com/example/Foo.Bar:type/x\"," +
+				"\"Data\":{\"JavaKind\":\"SOMETHING_NEW\",\"Package\":\"com.example\"}" +
+				"}", def);
+	}
+
+	/**
+	 * Making sure that exported method is written in srclib format
+	 */
+	@Test
+	public void testExportedDef() throws Exception {
+		Def def = new Def();
+		def.defKey = new DefKey(new URI("file:/src/com/example/Foo.java"), "com.example.Foo:type.foo");
+		def.kind = "METHOD";
+		def.name = "foo";
+		def.file = PathUtil.CWD.resolve("src/com/example/Foo.java").toString();
+		def.defStart = 30;
+		def.defEnd = 60;
+		def.pkg = "com.example";
+		def.typeExpr = "int";
+		def.modifiers = Arrays.asList("public", "static");
+
+		assertJSON("{" +
+				"\"File\":\"src/com/example/Foo.java\"," +
+				"\"Name\":\"foo\"," +
+				"\"DefStart\":30," +
+				"\"DefEnd\":60," +
+				"\"Exported\":true," +
+				"\"Local\":false," +
+				"\"Kind\":\"func\"," +
+				"\"Path\":\"com/example/Foo:type/foo\"," +
+				"\"TreePath\":\"com/example/Foo:type/foo\"," +
+				"\"Data\":{" +
+				"\"JavaKind\":\"METHOD\"," +
+				"\"TypeExpression\":\"int\"," +
+				"\"Package\":\"com.example\"," +
+				"\"Modifiers\":[\"public\",\"static\"]}" +
+				"}", def);
+	}
+
+	/**
+	 * Making sure that references are written in srclib format, unresolved target is omitted
+	 */
+	@Test
+	public void testRef() throws Exception {
+		Ref ref = new Ref();
+		ref.defKey = new DefKey(new URI("file:/src/com/example/Foo.java"), "com.example.Foo:type.foo");
+		ref.file = PathUtil.CWD.resolve("src/com/example/Bar.java").toString();
+		ref.start = 5;
+		ref.end = 8;
+		ref.defRepo = "github.com/example/foo";
+		ref.defUnitType = "JavaArtifact";
+		ref.defUnit = "com.example/foo";
+
+		assertJSON("{" +
+				"\"_JavaOrigin\":\"file:/src/com/example/Foo.java\"," +
+				"\"DefRepo\":\"github.com/example/foo\"," +
+				"\"DefUnitType\":\"JavaArtifact\"," +
+				"\"DefUnit\":\"com.example/foo\"," +
+				"\"DefPath\":\"com/example/Foo:type/foo\"," +
+				"\"File\":\"src/com/example/Bar.java\"," +
+				"\"Start\":5," +
+				"\"End\":8," +
+				"\"Def\":false" +
+				"}", ref);
+
+		ref = new Ref();
+		ref.defKey = new DefKey(null, "com.example.Foo:type");
+		ref.file = PathUtil.CWD.resolve("src/com/example/Foo.java").toString();
+		ref.start = 13;
+		ref.end = 16;
+		ref.def = true;
+
+		assertJSON("{" +
+				"\"DefPath\":\"com/example/Foo:type\"," +
+				"\"File\":\"src/com/example/Foo.java\"," +
+				"\"Start\":13," +
+				"\"End\":16," +
+				"\"Def\":true" +
+				"}", ref);
+	}
+
+	private static void assertJSON(String expected, Object o) {
+		String actual = JSONUtil.gson(false).toJson(o);
+		JsonElement expectedJSON = new JsonParser().parse(expected);
+		JsonElement actualJSON = new JsonParser().parse(actual);
+		assertEquals(expectedJSON, actualJSON);
+		// field order is kept as well
+		assertEquals(expectedJSON.toString(), actualJSON.toString());
+	}
+}
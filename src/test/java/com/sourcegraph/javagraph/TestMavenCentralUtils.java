@@ -0,0 +1,113 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestMavenCentralUtils {
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("srclib-jars-test");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	/**
+	 * Making sure that JARs built by Maven are identified without remote lookup
+	 */
+	@Test
+	public void testPomProperties() throws Exception {
+		Path jar = writeJar("foo-1.0.jar", "com.example:foo:1.0");
+		Map<Path, RawDependency> identified = MavenCentralUtils.identify(Collections.singletonList(jar));
+		RawDependency dependency = identified.get(jar);
+		assertEquals("com.example", dependency.groupID);
+		assertEquals("foo", dependency.artifactID);
+		assertEquals("1.0", dependency.version);
+	}
+
+	/**
+	 * Making sure that shaded JAR is identified by the pom.properties matching JAR file name
+	 */
+	@Test
+	public void testShadedPomProperties() throws Exception {
+		Path jar = writeJar("bar-2.0.jar", "com.example:baz:3.0", "com.example:bar:2.0");
+		assertEquals("bar", MavenCentralUtils.readPomProperties(jar).artifactID);
+
+		jar = writeJar("qux.jar", "com.example:baz:3.0", "com.example:bar:2.0");
+		assertNull(MavenCentralUtils.readPomProperties(jar));
+
+		// fat JAR shading a single library
+		jar = writeJar("app-1.0.jar", "com.example:baz:3.0");
+		assertNull(MavenCentralUtils.readPomProperties(jar));
+	}
+
+	/**
+	 * Making sure that JARs known to be missing in Maven Central are not looked up again
+	 */
+	@Test
+	public void testCache() throws Exception {
+		Path known = dir.resolve("known.jar");
+		Path missing = dir.resolve("missing.jar");
+		Path unknown = dir.resolve("unknown.jar");
+		Map<Path, String> hashes = new HashMap<>();
+		hashes.put(known, "1111");
+		hashes.put(missing, "2222");
+		hashes.put(unknown, "3333");
+		Properties cache = new Properties();
+		cache.setProperty("1111", "com.example:foo:1.0");
+		cache.setProperty("2222", MavenCentralUtils.NOT_FOUND);
+
+		Map<Path, RawDependency> identified = new HashMap<>();
+		Map<String, Collection<Path>> remote = MavenCentralUtils.lookupCache(cache, hashes, identified);
+		assertEquals(Collections.singleton(known), identified.keySet());
+		assertEquals("foo", identified.get(known).artifactID);
+		assertEquals(Collections.singletonMap("3333", Collections.singletonList(unknown)), remote);
+	}
+
+	/**
+	 * Making sure that memory-mapped hashing produces regular SHA-1
+	 */
+	@Test
+	public void testSha() throws Exception {
+		Path jar = writeJar("foo-1.0.jar", "com.example:foo:1.0");
+		assertEquals(DigestUtils.sha1Hex(Files.readAllBytes(jar)), MavenCentralUtils.calculateSha(jar));
+	}
+
+	private Path writeJar(String name, String... coordinates) throws Exception {
+		Path jar = dir.resolve(name);
+		try (JarOutputStream os = new JarOutputStream(new FileOutputStream(jar.toFile()))) {
+			for (String gav : coordinates) {
+				String parts[] = gav.split(":");
+				os.putNextEntry(new JarEntry("META-INF/maven/" + parts[0] + '/' + parts[1] + "/pom.properties"));
+				os.write(("groupId=" + parts[0] + "\nartifactId=" + parts[1] + "\nversion=" + parts[2] + '\n').
+						getBytes(StandardCharsets.UTF_8));
+				os.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+}
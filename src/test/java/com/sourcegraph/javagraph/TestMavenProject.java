@@ -9,9 +9,16 @@ import org.junit.Test;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestMavenProject {
 
@@ -56,4 +63,65 @@ public class TestMavenProject {
 		assertEquals("Some artifacts were unresolved, probably repository was not resolved", 3, artifacts.size());
 	}
 
+	/**
+	 * Making sure that lightweight model provides the same data scan relies on as the full one
+	 */
+	@Test
+	public void testLightweightModel() throws Exception {
+		org.apache.maven.project.MavenProject full = new MavenProject(
+				Paths.get("src/test/resources/pom-dependencies.xml")).getMavenProject();
+		org.apache.maven.project.MavenProject lightweight = new MavenProject(
+				Paths.get("src/test/resources/pom-dependencies.xml"),
+				new ArrayList<>(),
+				null,
+				true).getMavenProject();
+		assertEquals(full.getGroupId(), lightweight.getGroupId());
+		assertEquals(full.getArtifactId(), lightweight.getArtifactId());
+		assertEquals(full.getVersion(), lightweight.getVersion());
+		assertEquals(full.getModules(), lightweight.getModules());
+		assertEquals(full.getCompileSourceRoots(), lightweight.getCompileSourceRoots());
+		assertEquals(full.getTestCompileSourceRoots(), lightweight.getTestCompileSourceRoots());
+		assertEquals(full.getProperties(), lightweight.getProperties());
+		assertEquals(full.getDependencies().stream().map(d -> d.getManagementKey() + ':' + d.getVersion() + ':' + d.getScope()).
+						collect(Collectors.toList()),
+				lightweight.getDependencies().stream().map(d -> d.getManagementKey() + ':' + d.getVersion() + ':' + d.getScope()).
+						collect(Collectors.toList()));
+	}
+
+	/**
+	 * Making sure that test-scoped dependencies go to test unit if there is one and stay in main unit otherwise
+	 */
+	@Test
+	public void testTestUnit() throws Exception {
+		BuildAnalysis.BuildInfo info = new BuildAnalysis.BuildInfo();
+		info.attrs.groupID = "com.example";
+		info.attrs.artifactID = "foo";
+		RawDependency main = new RawDependency("com.example", "bar", "1.0", "compile", null, null);
+		RawDependency test = new RawDependency("junit", "junit", "4.12", "test", null, null);
+		info.dependencies.add(main);
+		info.dependencies.add(test);
+
+		assertFalse(MavenProject.hasTestUnit(info));
+		assertEquals(new HashSet<>(Arrays.asList(main, test)), new HashSet<>(MavenProject.getMainDependencies(info)));
+
+		info.testSources.add("src/test/java/FooTest.java");
+		info.testSourceDirs.add(new String[]{info.getName(), info.version, "src/test/java"});
+		assertTrue(MavenProject.hasTestUnit(info));
+		assertEquals(Collections.singletonList(main), MavenProject.getMainDependencies(info));
+
+		SourceUnit mainUnit = new SourceUnit();
+		mainUnit.Name = info.getName();
+		String[] mainSourceDir = {info.getName(), info.version, "src/main/java"};
+		SourceUnit testUnit = MavenProject.createTestUnit(mainUnit,
+				info,
+				Collections.singleton(mainSourceDir));
+		assertEquals("com.example/foo" + SourceUnit.TEST_SUFFIX, testUnit.Name);
+		assertEquals(mainUnit.Name, testUnit.Data.get(SourceUnit.MAIN_UNIT));
+		assertEquals(Collections.singletonList("src/test/java/FooTest.java"), testUnit.Files);
+		assertEquals(Collections.singletonList(test), testUnit.Dependencies);
+		@SuppressWarnings("unchecked")
+		Collection<String[]> sourcePath = (Collection<String[]>) testUnit.Data.get("SourcePath");
+		assertEquals(new HashSet<>(Arrays.asList("src/main/java", "src/test/java")),
+				sourcePath.stream().map(dir -> dir[2]).collect(Collectors.toSet()));
+	}
 }
@@ -0,0 +1,60 @@
+package com.sourcegraph.javagraph;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+public class TestSbtProject {
+
+	private Path buildDir;
+
+	@Before
+	public void setUp() throws Exception {
+		buildDir = Files.createTempDirectory("srclib-sbt-test");
+		FileUtils.writeStringToFile(buildDir.resolve("build.sbt").toFile(), "lazy val root = project");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(buildDir.toFile());
+	}
+
+	/**
+	 * Making sure that all projects are extracted from a single dump, aggregating root project is skipped
+	 */
+	@Test
+	public void testBatch() throws Exception {
+		String sbt = new File("src/test/resources/sbt/fake-sbt").getAbsolutePath();
+		Collection<SourceUnit> units = SbtProject.processSourceUnitBatch(buildDir.resolve("build.sbt"), sbt);
+		assertNotNull("Dump was not produced", units);
+
+		List<String> names = units.stream().map(unit -> unit.Name).collect(Collectors.toList());
+		assertEquals(Arrays.asList("core", "util"), names);
+
+		SourceUnit core = units.iterator().next();
+		assertEquals(2, core.Files.size());
+		List<String> dependencies = new ArrayList<>();
+		for (RawDependency dependency : core.Dependencies) {
+			dependencies.add(dependency.groupID + ':' + dependency.artifactID + ':' + dependency.version);
+		}
+		assertEquals(Arrays.asList("org.scala-lang:scala-library:2.11.8", "com.google.guava:guava:18.0"),
+				dependencies);
+		assertEquals(buildDir.toString(), core.Dir);
+		assertFalse("Dump script was not removed", buildDir.resolve("fossa-srclib-dump.sbt").toFile().exists());
+	}
+
+}
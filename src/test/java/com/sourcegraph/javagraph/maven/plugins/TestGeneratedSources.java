@@ -0,0 +1,197 @@
+package com.sourcegraph.javagraph.maven.plugins;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestGeneratedSources {
+
+	private File dir;
+	private File repoDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("srclib-generated").toFile();
+		repoDir = new File(dir, "repo");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteQuietly(dir);
+	}
+
+	/**
+	 * Making sure that hash is stable for identical inputs and changes with grammars and plugin configuration
+	 */
+	@Test
+	public void testHash() throws Exception {
+		File pomFile = module("a");
+		File grammars = new File(pomFile.getParentFile(), "src/main/antlr4");
+		File grammar = new File(grammars, "G.g4");
+		Collection<File> inputs = Collections.singletonList(grammars);
+
+		String hash = GeneratedSources.hash(pomFile, plugin("<visitor>true</visitor>"), inputs);
+		assertNotNull(hash);
+		assertEquals(hash, GeneratedSources.hash(pomFile, plugin("<visitor>true</visitor>"), inputs));
+
+		FileUtils.writeStringToFile(grammar, "grammar G; r : 'b' ;");
+		String changedGrammar = GeneratedSources.hash(pomFile, plugin("<visitor>true</visitor>"), inputs);
+		assertFalse(hash.equals(changedGrammar));
+
+		FileUtils.writeStringToFile(grammar, "grammar G; r : 'a' ;");
+		assertEquals(hash, GeneratedSources.hash(pomFile, plugin("<visitor>true</visitor>"), inputs));
+
+		assertFalse(hash.equals(GeneratedSources.hash(pomFile, plugin("<visitor>false</visitor>"), inputs)));
+
+		FileUtils.writeStringToFile(new File(grammars, "H.g4"), "grammar H; r : 'a' ;");
+		assertFalse(hash.equals(GeneratedSources.hash(pomFile, plugin("<visitor>true</visitor>"), inputs)));
+	}
+
+	/**
+	 * Making sure that generation is skipped while inputs and output directory are the same, and that failed
+	 * generation is retried
+	 */
+	@Test
+	public void testSkip() throws Exception {
+		File pomFile = module("a");
+		File grammar = new File(pomFile.getParentFile(), "src/main/antlr4/G.g4");
+		File output = output(pomFile);
+
+		RecordingGeneratedSources sources = new RecordingGeneratedSources();
+		generate(sources, pomFile);
+		assertEquals(Collections.singletonList("a/pom.xml generate-sources"), sources.runs);
+		assertTrue(output.isDirectory());
+
+		// cache is persisted
+		sources = new RecordingGeneratedSources();
+		generate(sources, pomFile);
+		assertTrue(sources.runs.isEmpty());
+
+		FileUtils.writeStringToFile(grammar, "grammar G; r : 'b' ;");
+		generate(sources, pomFile);
+		assertEquals(1, sources.runs.size());
+
+		FileUtils.deleteDirectory(output);
+		generate(sources, pomFile);
+		assertEquals(2, sources.runs.size());
+
+		// failed generation is not recorded
+		FileUtils.writeStringToFile(grammar, "grammar G; r : 'c' ;");
+		FileUtils.deleteDirectory(output);
+		sources = new RecordingGeneratedSources();
+		sources.failing.add(pomFile);
+		generate(sources, pomFile);
+		generate(sources, pomFile);
+		assertEquals(2, sources.runs.size());
+	}
+
+	/**
+	 * Making sure that batched requests are processed by a single reactor run and modules left without generated
+	 * sources are processed one by one
+	 */
+	@Test
+	public void testBatch() throws Exception {
+		File a = module("a");
+		File b = module("b");
+
+		RecordingGeneratedSources sources = new RecordingGeneratedSources();
+		sources.failingInReactor.add(b);
+		sources.beginBatch();
+		generate(sources, a);
+		generate(sources, b);
+		assertTrue(sources.runs.isEmpty());
+		sources.endBatch(repoDir);
+		assertEquals(Arrays.asList("pom.xml --fail-at-end generate-sources", "b/pom.xml generate-sources"),
+				sources.runs);
+		assertTrue(output(a).isDirectory());
+		assertTrue(output(b).isDirectory());
+
+		sources = new RecordingGeneratedSources();
+		sources.beginBatch();
+		generate(sources, a);
+		generate(sources, b);
+		sources.endBatch(repoDir);
+		assertTrue(sources.runs.isEmpty());
+	}
+
+	private File module(String name) throws Exception {
+		File pomFile = new File(dir, name + "/pom.xml");
+		FileUtils.writeStringToFile(pomFile, "<project><artifactId>" + name + "</artifactId></project>");
+		FileUtils.writeStringToFile(new File(dir, name + "/src/main/antlr4/G.g4"), "grammar G; r : 'a' ;");
+		return pomFile;
+	}
+
+	private static File output(File pomFile) {
+		return new File(pomFile.getParentFile(), "target/generated-sources/antlr4");
+	}
+
+	private void generate(GeneratedSources sources, File pomFile) throws Exception {
+		MavenProject project = new MavenProject();
+		project.getModel().setPomFile(pomFile);
+		sources.generate(project,
+				repoDir,
+				plugin("<visitor>true</visitor>"),
+				output(pomFile),
+				Collections.singletonList(new File(pomFile.getParentFile(), "src/main/antlr4")));
+	}
+
+	private static Plugin plugin(String configuration) throws Exception {
+		Plugin plugin = new Plugin();
+		plugin.setGroupId("org.antlr");
+		plugin.setArtifactId("antlr4-maven-plugin");
+		plugin.setConfiguration(Xpp3DomBuilder.build(
+				new StringReader("<configuration>" + configuration + "</configuration>")));
+		return plugin;
+	}
+
+	/**
+	 * Records Maven runs instead of running Maven, output directories of modules are created unless module fails
+	 */
+	private class RecordingGeneratedSources extends GeneratedSources {
+
+		final List<String> runs = new ArrayList<>();
+		final Set<File> failing = new HashSet<>();
+		final Set<File> failingInReactor = new HashSet<>();
+
+		@Override
+		void runMavenGoal(File pomFile, File repoDir, String... goal) {
+			List<String> run = new ArrayList<>();
+			if (pomFile.getAbsolutePath().startsWith(repoDir.getAbsolutePath())) {
+				// aggregator POM
+				run.add(pomFile.getName());
+				for (File module : Arrays.asList(new File(dir, "a/pom.xml"), new File(dir, "b/pom.xml"))) {
+					if (!failing.contains(module) && !failingInReactor.contains(module)) {
+						output(module).mkdirs();
+					}
+				}
+			} else {
+				run.add(dir.toPath().relativize(pomFile.toPath()).toString().replace(File.separatorChar, '/'));
+				if (!failing.contains(pomFile)) {
+					output(pomFile).mkdirs();
+				}
+			}
+			run.addAll(Arrays.asList(goal));
+			runs.add(String.join(" ", run));
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.sourcegraph.javagraph.maven.plugins;
+
+import com.google.common.reflect.ClassPath;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestMavenPlugins {
+
+	/**
+	 * Making sure that every Maven plugin implementation is listed in META-INF/services
+	 */
+	@Test
+	public void testServiceIndex() throws Exception {
+		Set<String> expected = new TreeSet<>();
+		ClassPath classPath = ClassPath.from(MavenPlugin.class.getClassLoader());
+		for (ClassPath.ClassInfo info : classPath.getTopLevelClasses(MavenPlugin.class.getPackage().getName())) {
+			Class<?> c = info.load();
+			if (!c.isInterface() && !Modifier.isAbstract(c.getModifiers()) && MavenPlugin.class.isAssignableFrom(c)) {
+				expected.add(c.getName());
+			}
+		}
+		Set<String> registered = new TreeSet<>();
+		for (MavenPlugin plugin : ServiceLoader.load(MavenPlugin.class)) {
+			registered.add(plugin.getClass().getName());
+		}
+		assertEquals(expected, registered);
+	}
+
+}